@@ -68,6 +68,10 @@ android {
         viewBinding = true
         buildConfig = true
     }
+    testOptions {
+        // android.util.Log in classes under JVM unit test
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
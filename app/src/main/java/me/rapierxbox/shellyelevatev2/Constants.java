@@ -14,6 +14,10 @@ public class Constants {
     //IO SP Keys
     public static final String SP_SWITCH_ON_SWIPE = "switchOnSwipe";
     public static final String SP_POWER_BUTTON_AUTO_REBOOT = "powerButtonAutoReboot";
+    public static final String SP_CLIMATE_SAMPLE_INTERVAL = "climateSampleInterval";
+    public static final String SP_RELAY_POLL_INTERVAL = "relayPollInterval";
+    public static final String SP_HARDWARE_BACKEND = "hardwareBackend";
+    public static final String SP_HARDWARE_SCRIPT = "hardwareScript";
 
     //Webserver SP Keys
     public static final String SP_HTTP_SERVER_ENABLED = "httpServer";
@@ -23,11 +27,19 @@ public class Constants {
     public static final String SP_WEBVIEW_URL = "webviewUrl";
     public static final String SP_DEPRECATED_HA_IP = "homeAssistantIp";
     public static final String SP_IGNORE_SSL_ERRORS = "ignoreSslErrors";
+    public static final String SP_WEBVIEW_SLEEP_POLICY = "webviewSleepPolicy";
+    public static final String SP_WEBVIEW_RELOAD_AFTER_SLEEP = "webviewReloadAfterSleep";
 
     //Screen SP Keys
     public static final String SP_AUTOMATIC_BRIGHTNESS = "automaticBrightness";
     public static final String SP_MIN_BRIGHTNESS = "minBrightness";
     public static final String SP_BRIGHTNESS = "brightness";
+    public static final String SP_BRIGHTNESS_CURVE = "brightnessCurve";
+    public static final String SP_LUX_FILTER = "luxFilter";
+    public static final String SP_LUX_FILTER_TIME_CONSTANT = "luxFilterTimeConstant";
+    public static final String SP_LUX_FILTER_WINDOW = "luxFilterWindow";
+    public static final String SP_LUX_FILTER_ATTACK = "luxFilterAttack";
+    public static final String SP_LUX_FILTER_DECAY = "luxFilterDecay";
 
     //Screen Saver SP Keys
     public static final String SP_SCREEN_SAVER_ENABLED = "screenSaver";
@@ -35,6 +47,8 @@ public class Constants {
     public static final String SP_SCREEN_SAVER_ID = "screenSaverId";
     public static final String SP_WAKE_ON_PROXIMITY = "wakeOnProximity";
     public static final String SP_SCREEN_SAVER_MIN_BRIGHTNESS = "screenSaverMinBrightness";
+    public static final String SP_SCREEN_SAVER_BRIGHTNESS_CURVE = "screenSaverBrightnessCurve";
+    public static final String SP_SCREEN_SAVER_PIXEL_SHIFT = "screenSaverPixelShift";
     public static final String SP_TOUCH_TO_WAKE = "touchToWake";
 
     //MQTT SP Keys
@@ -44,27 +58,14 @@ public class Constants {
     public static final String SP_MQTT_USERNAME = "mqttUsername";
     public static final String SP_MQTT_PASSWORD = "mqttPassword";
     public static final String SP_MQTT_CLIENTID = "mqttDeviceId";
-
-    //ScreenSaver intents
-    public static final String INTENT_SCREEN_SAVER_STARTED = "me.rapierxbox.shellyelevatev2.SCREEN_SAVER_STARTED";
-    public static final String INTENT_SCREEN_SAVER_STOPPED = "me.rapierxbox.shellyelevatev2.SCREEN_SAVER_STOPPED";
-    public static final String INTENT_END_SCREENSAVER = "me.rapierxbox.shellyelevatev2.END_SCREENSAVER";
-
-    //IO Intents
-    public static final String INTENT_LIGHT_UPDATED = "me.rapierxbox.shellyelevatev2.LIGHT_UPDATED";
-    public static final String INTENT_LIGHT_KEY = "lightValue";
-
-    public static final String INTENT_PROXIMITY_UPDATED = "me.rapierxbox.shellyelevatev2.PROXIMITY_UPDATED";
-    public static final String INTENT_PROXIMITY_KEY = "proximityValue";
-
-    //Screen Intents
-    public static final String INTENT_TURN_SCREEN_ON = "me.rapierxbox.shellyelevatev2.INTENT_TURN_SCREEN_ON";
-    public static final String INTENT_TURN_SCREEN_OFF = "me.rapierxbox.shellyelevatev2.INTENT_TURN_SCREEN_OFF";
+    public static final String SP_MQTT_BRIGHTNESS_LIVE = "mqttBrightnessLive";
+    public static final String SP_MQTT_BRIGHTNESS_HEARTBEAT = "mqttBrightnessHeartbeat";
+    public static final String SP_MQTT_REPUBLISH_SPREAD = "mqttRepublishSpread";
+    public static final String SP_MQTT_PERSIST_QUEUE = "mqttPersistQueue";
+    public static final String SP_MQTT_PUBLISH_POLICY = "mqttPublishPolicy";
 
     //User Actions Intents
     public static final String ACTION_USER_INTERACTION = "shellyelevate.ACTION_USER_INTERACTION";
-    public static final String INTENT_SETTINGS_CHANGED = "me.rapierxbox.shellyelevatev2.SETTINGS_CHANGED";
-    public static final String INTENT_WEBVIEW_INJECT_JAVASCRIPT = "me.rapierxbox.shellyelevatev2.WEBVIEW_INJECT_JAVASCRIPT";
 
     //MQTT Topics
     public static final String MQTT_TOPIC_CONFIG_DEVICE = "homeassistant/device/%s/config";
@@ -88,6 +89,7 @@ public class Constants {
     public static final String MQTT_TOPIC_POWER_BUTTON = "shellyelevatev2/%s/power_button";
     public static final String MQTT_TOPIC_SWIPE_EVENT = "shellyelevatev2/%s/swipe_event";
     public static final String MQTT_TOPIC_SLEEPING_BINARY_SENSOR = "shellyelevatev2/%s/sleeping";
+    public static final String MQTT_TOPIC_WAKE_LATENCY = "shellyelevatev2/%s/wake_latency";
     public static final String MQTT_TOPIC_HOME_ASSISTANT_STATUS = "homeassistant/status";
 
     //Button Press Types
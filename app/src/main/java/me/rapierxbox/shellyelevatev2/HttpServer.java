@@ -1,49 +1,54 @@
 package me.rapierxbox.shellyelevatev2;
 
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_SETTINGS_CHANGED;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_WEBVIEW_INJECT_JAVASCRIPT;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_BRIGHTNESS_CURVE;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_HTTP_SERVER_ENABLED;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_MEDIA_ENABLED;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_BRIGHTNESS_CURVE;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mApplicationContext;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mClimateSampler;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceHelper;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceSensorManager;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mMQTTServer;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mMediaHelper;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenManager;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenSaverManager;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mSharedPreferences;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.util.Log;
 import android.widget.Toast;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 
 import fi.iki.elonen.NanoHTTPD;
+import me.rapierxbox.shellyelevatev2.events.EventBus;
+import me.rapierxbox.shellyelevatev2.hardware.SamplingProfile;
+import me.rapierxbox.shellyelevatev2.helper.BrightnessAnimator;
+import me.rapierxbox.shellyelevatev2.helper.BrightnessCurve;
+import me.rapierxbox.shellyelevatev2.helper.ClimateSnapshot;
+
 public class HttpServer extends NanoHTTPD {
     final SettingsParser mSettingsParser = new SettingsParser();
 
     public HttpServer() {
         super(8080);
 
-        LocalBroadcastManager localBroadcastManager = LocalBroadcastManager.getInstance(mApplicationContext);
-        BroadcastReceiver settingsChangedBroadcastReceiver = new BroadcastReceiver() {
+        EventBus.SettingsListener settingsListener = new EventBus.SettingsListener() {
             @Override
-            public void onReceive(Context context, Intent intent) {
+            public void onSettingsChanged() {
                 if (mSharedPreferences.getBoolean(SP_HTTP_SERVER_ENABLED, true) && !isAlive()) {
                     try {
                         start();
@@ -55,7 +60,8 @@ public class HttpServer extends NanoHTTPD {
                 }
             }
         };
-        localBroadcastManager.registerReceiver(settingsChangedBroadcastReceiver, new IntentFilter(INTENT_SETTINGS_CHANGED));
+        // start() binds a socket, keep it off the main thread
+        mEventBus.settings.register(settingsListener, EventBus.Delivery.BACKGROUND);
     }
 
     @Override
@@ -132,8 +138,7 @@ public class HttpServer extends NanoHTTPD {
         switch (uri.replace("/webview/", "")) {
             case "refresh":
                 if (method.equals(Method.GET)) {
-                    Intent intent = new Intent(INTENT_SETTINGS_CHANGED);
-                    LocalBroadcastManager.getInstance(ShellyElevateApplication.mApplicationContext).sendBroadcast(intent);
+                    mEventBus.postSettingsChanged();
                     jsonResponse.put("success", true);
                 }
                 break;
@@ -147,9 +152,7 @@ public class HttpServer extends NanoHTTPD {
 
                     String javascript = jsonObject.getString("javascript");
 
-                    Intent intent = new Intent(INTENT_WEBVIEW_INJECT_JAVASCRIPT);
-                    intent.putExtra("javascript", javascript);
-                    LocalBroadcastManager.getInstance(ShellyElevateApplication.mApplicationContext).sendBroadcast(intent);
+                    mEventBus.postJavascript(javascript);
 
                     jsonResponse.put("success", true);
                 }
@@ -312,8 +315,10 @@ public class HttpServer extends NanoHTTPD {
                 break;
             case "getTemperature":
                 if (method.equals(Method.GET)) {
+                    ClimateSnapshot climate = getClimateSnapshot(session);
                     jsonResponse.put("success", true);
-                    jsonResponse.put("temperature", mDeviceHelper.getTemperature());
+                    jsonResponse.put("temperature", climate.temperature);
+                    if (climate.sampledAtMs != 0L) jsonResponse.put("age", climate.getAgeMs());
                 } else {
                     jsonResponse.put("success", false);
                     jsonResponse.put("error", "Invalid request method");
@@ -321,8 +326,10 @@ public class HttpServer extends NanoHTTPD {
                 break;
             case "getHumidity":
                 if (method.equals(Method.GET)) {
+                    ClimateSnapshot climate = getClimateSnapshot(session);
                     jsonResponse.put("success", true);
-                    jsonResponse.put("humidity", mDeviceHelper.getHumidity());
+                    jsonResponse.put("humidity", climate.humidity);
+                    if (climate.sampledAtMs != 0L) jsonResponse.put("age", climate.getAgeMs());
                 } else {
                     jsonResponse.put("success", false);
                     jsonResponse.put("error", "Invalid request method");
@@ -332,6 +339,91 @@ public class HttpServer extends NanoHTTPD {
                 if (method.equals(Method.GET)) {
                     jsonResponse.put("success", true);
                     jsonResponse.put("lux", mDeviceSensorManager.getLastMeasuredLux());
+                    jsonResponse.put("filteredLux", mScreenManager.getFilteredLux());
+                } else {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("error", "Invalid request method");
+                }
+                break;
+            case "fadeStats":
+                if (method.equals(Method.GET)) {
+                    BrightnessAnimator.Stats stats = mScreenManager.getFadeStats();
+                    jsonResponse.put("success", true);
+                    jsonResponse.put("running", stats.running);
+                    jsonResponse.put("fades", stats.fades);
+                    jsonResponse.put("steps", stats.totalSteps);
+                    jsonResponse.put("retargets", stats.totalRetargets);
+                    jsonResponse.put("lastFadeFrom", stats.lastFadeFrom);
+                    jsonResponse.put("lastFadeTo", stats.lastFadeTo);
+                    jsonResponse.put("lastFadeSteps", stats.lastFadeSteps);
+                    jsonResponse.put("lastFadeDurationMs", stats.lastFadeDurationMs);
+                } else {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("error", "Invalid request method");
+                }
+                break;
+            case "wakeLatency":
+                if (method.equals(Method.GET)) {
+                    jsonResponse = mScreenManager.getWakeLatency().toJson();
+                    jsonResponse.put("success", true);
+                } else {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("error", "Invalid request method");
+                }
+                break;
+            case "mqttQueue":
+                if (method.equals(Method.GET)) {
+                    jsonResponse = mMQTTServer.getOutboundQueue();
+                    jsonResponse.put("success", true);
+                } else {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("error", "Invalid request method");
+                }
+                break;
+            case "getSensorProfile":
+                if (method.equals(Method.GET)) {
+                    SamplingProfile profile = mDeviceSensorManager.getSamplingProfile();
+                    jsonResponse.put("success", true);
+                    jsonResponse.put("profile", profile.name().toLowerCase(Locale.ROOT));
+                    jsonResponse.put("samplingPeriodUs", profile.samplingPeriodUs);
+                    jsonResponse.put("maxReportLatencyUs", profile.maxReportLatencyUs);
+                } else {
+                    jsonResponse.put("success", false);
+                    jsonResponse.put("error", "Invalid request method");
+                }
+                break;
+            case "brightnessCurve":
+                if (method.equals(Method.GET)) {
+                    jsonResponse.put("success", true);
+                    jsonResponse.put("curve", mScreenManager.getBrightnessCurve().getSpec());
+                    jsonResponse.put("screenSaverCurve", mScreenManager.getScreenSaverBrightnessCurve().getSpec());
+                } else if (method.equals(Method.POST)) {
+                    Map<String, String> body = new HashMap<>();
+                    session.parseBody(body);
+                    String postData = body.get("postData");
+                    assert postData != null;
+                    JSONObject jsonObject = new JSONObject(postData);
+
+                    SharedPreferences.Editor editor = mSharedPreferences.edit();
+                    try {
+                        // validate before storing, /settings would store a broken spec as-is
+                        for (String[] field : new String[][]{{"curve", SP_BRIGHTNESS_CURVE}, {"screenSaverCurve", SP_SCREEN_SAVER_BRIGHTNESS_CURVE}}) {
+                            if (!jsonObject.has(field[0])) continue;
+                            String spec = jsonObject.getString(field[0]);
+                            if (!spec.trim().isEmpty()) BrightnessCurve.compile(spec, 0);
+                            editor.putString(field[1], spec);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        jsonResponse.put("success", false);
+                        jsonResponse.put("error", e.getMessage());
+                        return newFixedLengthResponse(Response.Status.BAD_REQUEST, "application/json", jsonResponse.toString());
+                    }
+                    editor.apply();
+
+                    // ScreenManager recompiles from the preference listener; an empty spec means the built-in ramp
+                    jsonResponse.put("success", true);
+                    jsonResponse.put("curve", mSharedPreferences.getString(SP_BRIGHTNESS_CURVE, ""));
+                    jsonResponse.put("screenSaverCurve", mSharedPreferences.getString(SP_SCREEN_SAVER_BRIGHTNESS_CURVE, ""));
                 } else {
                     jsonResponse.put("success", false);
                     jsonResponse.put("error", "Invalid request method");
@@ -433,6 +525,19 @@ public class HttpServer extends NanoHTTPD {
 
         return newFixedLengthResponse(jsonResponse.getBoolean("success") ? Response.Status.OK : Response.Status.INTERNAL_ERROR, "application/json", jsonResponse.toString());
     }
+    /**
+     * Latest climate snapshot; an optional maxAge (ms) query parameter forces a fresh read when the snapshot is older.
+     */
+    private static ClimateSnapshot getClimateSnapshot(IHTTPSession session) {
+        List<String> maxAgeParam = session.getParameters().get("maxAge");
+        if (maxAgeParam != null && !maxAgeParam.isEmpty()) {
+            try {
+                return mClimateSampler.getLatest(Math.max(0L, Long.parseLong(maxAgeParam.get(0))));
+            } catch (NumberFormatException ignored) {}
+        }
+        return mClimateSampler.getLatest();
+    }
+
     private static int GetNumParameter(Map<String, List<String>> params, int defaultValue) {
         // Get the value of num
         List<String> numParam = params.get("num");
@@ -2,10 +2,8 @@ package me.rapierxbox.shellyelevatev2
 
 import android.Manifest
 import android.annotation.SuppressLint
-import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
-import android.content.IntentFilter
 import android.graphics.Bitmap
 import android.net.http.SslError
 import android.os.Bundle
@@ -29,21 +27,14 @@ import androidx.activity.ComponentActivity
 import androidx.activity.enableEdgeToEdge
 import androidx.annotation.RequiresPermission
 import androidx.lifecycle.lifecycleScope
-import androidx.localbroadcastmanager.content.LocalBroadcastManager
 import androidx.webkit.WebSettingsCompat
 import androidx.webkit.WebViewFeature
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
-import me.rapierxbox.shellyelevatev2.Constants.INTENT_PROXIMITY_UPDATED
-import me.rapierxbox.shellyelevatev2.Constants.INTENT_SCREEN_SAVER_STARTED
-import me.rapierxbox.shellyelevatev2.Constants.INTENT_SCREEN_SAVER_STOPPED
-import me.rapierxbox.shellyelevatev2.Constants.INTENT_SETTINGS_CHANGED
-import me.rapierxbox.shellyelevatev2.Constants.INTENT_TURN_SCREEN_OFF
-import me.rapierxbox.shellyelevatev2.Constants.INTENT_TURN_SCREEN_ON
-import me.rapierxbox.shellyelevatev2.Constants.INTENT_WEBVIEW_INJECT_JAVASCRIPT
 import me.rapierxbox.shellyelevatev2.Constants.SP_IGNORE_SSL_ERRORS
 import me.rapierxbox.shellyelevatev2.Constants.SP_SETTINGS_EVER_SHOWN
+import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mMQTTServer
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mMediaHelper
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenSaverManager
@@ -51,8 +42,11 @@ import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mSharedPreferences
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mShellyElevateJavascriptInterface
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mSwipeHelper
 import me.rapierxbox.shellyelevatev2.databinding.MainActivityBinding
+import me.rapierxbox.shellyelevatev2.events.EventBus
 import me.rapierxbox.shellyelevatev2.helper.ServiceHelper
 import me.rapierxbox.shellyelevatev2.helper.ButtonPressDetector
+import me.rapierxbox.shellyelevatev2.helper.WebViewSleepController
+import me.rapierxbox.shellyelevatev2.screensavers.ClockOverlay
 import me.rapierxbox.shellyelevatev2.Constants.SP_POWER_BUTTON_AUTO_REBOOT
 import android.provider.Settings
 import android.net.Uri
@@ -66,6 +60,8 @@ class MainActivity : ComponentActivity() {
     private val pendingJs = mutableListOf<String>()
 
     private lateinit var binding: MainActivityBinding // Declare the binding object
+    private lateinit var clockOverlay: ClockOverlay
+    private lateinit var webViewSleep: WebViewSleepController
 
     private var clicksButtonRight: Int = 0
     private var clicksButtonLeft: Int = 0
@@ -77,54 +73,57 @@ class MainActivity : ComponentActivity() {
     private lateinit var buttonPressDetector3: ButtonPressDetector
     private lateinit var powerButtonPressDetector: ButtonPressDetector
 
-    // === SETTINGS CHANGED RECEIVER ===
-    private val settingsChangedBroadcastReceiver: BroadcastReceiver = object : BroadcastReceiver() {
-        override fun onReceive(context: Context?, intent: Intent?) {
-            try {
-                val webviewUrl = ServiceHelper.getWebviewUrl()
-                Log.d("MainActivity", "Reloading WebView due to settings change: $webviewUrl")
-                binding.myWebView.loadUrl(webviewUrl)
-            } catch (e: Exception) {
-                Log.e("MainActivity", "Error reloading WebView on settings change", e)
-            }
+    // === SETTINGS CHANGED LISTENER ===
+    private val settingsListener = EventBus.SettingsListener {
+        try {
+            val webviewUrl = ServiceHelper.getWebviewUrl()
+            Log.d("MainActivity", "Reloading WebView due to settings change: $webviewUrl")
+            binding.myWebView.loadUrl(webviewUrl)
+        } catch (e: Exception) {
+            Log.e("MainActivity", "Error reloading WebView on settings change", e)
         }
     }
 
-    // === WEBVIEW JS INJECTOR RECEIVER ===
-    private val webviewJavascriptInjectorBroadcastReceiver: BroadcastReceiver = object : BroadcastReceiver() {
-        override fun onReceive(context: Context?, intent: Intent?) {
-            val javascriptCode = intent?.getStringExtra("javascript")?.trim() ?: return
-            try {
-                if (!firstPaintDone) {
-                    pendingJs.add(javascriptCode)
-                    Log.d("MainActivity", "Queueing JS until first paint")
-                    return
-                }
-                Log.d("MainActivity", "Injecting JS into WebView")
-                binding.myWebView.evaluateJavascript(javascriptCode, null)
-            } catch (e: Exception) {
-                Log.e("MainActivity", "Error injecting JS", e)
+    // === WEBVIEW JS INJECTOR LISTENER ===
+    private val javascriptListener = EventBus.JavascriptListener { javascript ->
+        val javascriptCode = javascript?.trim() ?: return@JavascriptListener
+        try {
+            if (!firstPaintDone) {
+                pendingJs.add(javascriptCode)
+                Log.d("MainActivity", "Queueing JS until first paint")
+                return@JavascriptListener
             }
+            Log.d("MainActivity", "Injecting JS into WebView")
+            binding.myWebView.evaluateJavascript(javascriptCode, null)
+        } catch (e: Exception) {
+            Log.e("MainActivity", "Error injecting JS", e)
         }
     }
 
-    // === SCREEN STATE RECEIVER ===
-    private val screenStateReceiver: BroadcastReceiver = object : BroadcastReceiver() {
-        override fun onReceive(context: Context?, intent: Intent?) {
-            val action = intent?.action ?: return
-            try {
-                when (action) {
-                    INTENT_TURN_SCREEN_ON -> mShellyElevateJavascriptInterface.onScreenOn()
-                    INTENT_TURN_SCREEN_OFF -> mShellyElevateJavascriptInterface.onScreenOff()
-                    INTENT_SCREEN_SAVER_STARTED -> mShellyElevateJavascriptInterface.onScreensaverOn()
-                    INTENT_SCREEN_SAVER_STOPPED -> mShellyElevateJavascriptInterface.onScreensaverOff()
-                    INTENT_PROXIMITY_UPDATED -> mShellyElevateJavascriptInterface.onMotion()
-                }
-                if (BuildConfig.DEBUG) Log.d("MainActivity", "screenStateReceiver invoked: $action")
-            } catch (e: Exception) {
-                Log.e("MainActivity", "Error handling screen state: $action", e)
-            }
-        }
+    // === HARDWARE KEY LISTENER (keys from a simulated hardware backend) ===
+    private val keyListener = EventBus.KeyListener { keyCode, down ->
+        if (keyCode < 0) return@KeyListener
+        val action = if (down) KeyEvent.ACTION_DOWN else KeyEvent.ACTION_UP
+        onKeyEventInternal(keyCode, KeyEvent(action, keyCode))
+    }
+
+    // === SCREEN STATE LISTENERS ===
+    private val screenListener = EventBus.ScreenListener { on ->
+        if (BuildConfig.DEBUG) Log.d("MainActivity", "Screen changed: $on")
+        if (on) mShellyElevateJavascriptInterface.onScreenOn() else mShellyElevateJavascriptInterface.onScreenOff()
+        webViewSleep.setScreenOn(on)
+    }
+
+    private val screenSaverListener = EventBus.ScreenSaverListener { running ->
+        if (BuildConfig.DEBUG) Log.d("MainActivity", "Screen saver changed: $running")
+        if (running) mShellyElevateJavascriptInterface.onScreensaverOn() else mShellyElevateJavascriptInterface.onScreensaverOff()
+        // also covers a saver switched in the settings while the clock was shown
+        if (!running) clockOverlay.hide()
+        webViewSleep.setScreenSaverRunning(running)
+    }
+
+    private val proximityListener = EventBus.ProximityListener {
+        mShellyElevateJavascriptInterface.onMotion()
     }
 
     var offlineFile = "file:///android_asset/offline.html"
@@ -425,25 +424,24 @@ class MainActivity : ComponentActivity() {
         }
     }
 
-    private fun registerBroadcastReceivers() {
-        LocalBroadcastManager.getInstance(this).apply {
-            registerReceiver(settingsChangedBroadcastReceiver, IntentFilter(INTENT_SETTINGS_CHANGED))
-            registerReceiver(webviewJavascriptInjectorBroadcastReceiver, IntentFilter(INTENT_WEBVIEW_INJECT_JAVASCRIPT))
-            registerReceiver(screenStateReceiver, IntentFilter().apply {
-                addAction(INTENT_TURN_SCREEN_ON)
-                addAction(INTENT_TURN_SCREEN_OFF)
-                addAction(INTENT_SCREEN_SAVER_STARTED)
-                addAction(INTENT_SCREEN_SAVER_STOPPED)
-                addAction(INTENT_PROXIMITY_UPDATED)
-            })
-        }
+    private fun registerEventListeners() {
+        mEventBus.settings.register(settingsListener, EventBus.Delivery.MAIN)
+        mEventBus.javascript.register(javascriptListener, EventBus.Delivery.MAIN)
+        mEventBus.key.register(keyListener, EventBus.Delivery.MAIN)
+        mEventBus.screen.register(screenListener, EventBus.Delivery.MAIN)
+        mEventBus.screenSaver.register(screenSaverListener, EventBus.Delivery.MAIN)
+        mEventBus.proximity.register(proximityListener, EventBus.Delivery.MAIN)
+        mEventBus.clockOverlay.register(clockOverlay, EventBus.Delivery.MAIN)
     }
 
-    private fun broadcastProximity(value: Float) {
-        val intent = Intent(INTENT_PROXIMITY_UPDATED)
-            .putExtra(Constants.INTENT_PROXIMITY_KEY, value)
-
-        LocalBroadcastManager.getInstance(applicationContext).sendBroadcast(intent)
+    private fun unregisterEventListeners() {
+        mEventBus.settings.unregister(settingsListener)
+        mEventBus.javascript.unregister(javascriptListener)
+        mEventBus.key.unregister(keyListener)
+        mEventBus.screen.unregister(screenListener)
+        mEventBus.screenSaver.unregister(screenSaverListener)
+        mEventBus.proximity.unregister(proximityListener)
+        mEventBus.clockOverlay.unregister(clockOverlay)
     }
 
     private fun safeInitialLoad() {
@@ -533,6 +531,8 @@ class MainActivity : ComponentActivity() {
 
         binding = MainActivityBinding.inflate(layoutInflater) // Inflate the binding
         setContentView(binding.root) // Set the content view using binding.root
+        clockOverlay = ClockOverlay(binding.clockOverlay, binding.glyphClock)
+        webViewSleep = WebViewSleepController({ binding.myWebView }, mSharedPreferences)
 
         // Initialize button press detectors
         initializeButtonPressDetectors()
@@ -541,7 +541,7 @@ class MainActivity : ComponentActivity() {
         setupSettingsButtons()
         setupSwipeOverlay()
 
-        registerBroadcastReceivers()
+        registerEventListeners()
 
         // Only show settings on first run, but not if launched from settings or if already in settings task
         if (!mSharedPreferences.getBoolean(SP_SETTINGS_EVER_SHOWN, false)) {
@@ -626,8 +626,8 @@ class MainActivity : ComponentActivity() {
             }
 
             // Proximity
-            135 -> { if (event.action == KeyEvent.ACTION_UP) { broadcastProximity(0f); return true }; return false }
-            136 -> { if (event.action == KeyEvent.ACTION_UP) { broadcastProximity(0.5f); return true }; return false }
+            135 -> { if (event.action == KeyEvent.ACTION_UP) { mEventBus.postProximity(0f); return true }; return false }
+            136 -> { if (event.action == KeyEvent.ACTION_UP) { mEventBus.postProximity(0.5f); return true }; return false }
 
             // Media keys
             KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE -> { if (event.action == KeyEvent.ACTION_UP) { mMediaHelper?.resumeOrPauseMusic(); return true }; return false }
@@ -687,11 +687,9 @@ class MainActivity : ComponentActivity() {
     }
 
     override fun onDestroy() {
-        LocalBroadcastManager.getInstance(this).apply {
-            unregisterReceiver(settingsChangedBroadcastReceiver)
-            unregisterReceiver(webviewJavascriptInjectorBroadcastReceiver)
-            unregisterReceiver(screenStateReceiver)
-        }
+        unregisterEventListeners()
+        clockOverlay.hide() // stops the glyph clock draw thread
+        webViewSleep.onDestroy()
         cancelRetry()
         super.onDestroy()
     }
@@ -19,8 +19,6 @@ import androidx.core.content.edit
 import androidx.core.view.MenuProvider
 import androidx.core.view.isVisible
 import androidx.fragment.app.Fragment
-import androidx.localbroadcastmanager.content.LocalBroadcastManager
-import me.rapierxbox.shellyelevatev2.Constants.INTENT_SETTINGS_CHANGED
 import me.rapierxbox.shellyelevatev2.Constants.SHARED_PREFERENCES_NAME
 import me.rapierxbox.shellyelevatev2.Constants.SP_AUTOMATIC_BRIGHTNESS
 import me.rapierxbox.shellyelevatev2.Constants.SP_BRIGHTNESS
@@ -40,11 +38,13 @@ import me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_DELAY
 import me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_ENABLED
 import me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_ID
 import me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_MIN_BRIGHTNESS
+import me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_PIXEL_SHIFT
 import me.rapierxbox.shellyelevatev2.Constants.SP_SWITCH_ON_SWIPE
 import me.rapierxbox.shellyelevatev2.Constants.SP_POWER_BUTTON_AUTO_REBOOT
 import me.rapierxbox.shellyelevatev2.Constants.SP_WAKE_ON_PROXIMITY
 import me.rapierxbox.shellyelevatev2.Constants.SP_WEBVIEW_URL
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceHelper
+import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mHttpServer
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenManager
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenSaverManager
@@ -165,6 +165,7 @@ class SettingsFragment : Fragment() {
         binding.screenSaverType.setSelection(mSharedPreferences.getInt(SP_SCREEN_SAVER_ID, 0))
         binding.wakeOnProximity.isChecked = mSharedPreferences.getBoolean(SP_WAKE_ON_PROXIMITY, true)
         binding.screensaverMinBrightness.value = mSharedPreferences.getInt(SP_SCREEN_SAVER_MIN_BRIGHTNESS, MIN_BRIGHTNESS_DEFAULT).toFloat()
+        binding.screenSaverPixelShift.isChecked = mSharedPreferences.getBoolean(SP_SCREEN_SAVER_PIXEL_SHIFT, true)
 
         //Http Server
         binding.httpServerEnabled.isChecked = mSharedPreferences.getBoolean(SP_HTTP_SERVER_ENABLED, true)
@@ -177,6 +178,7 @@ class SettingsFragment : Fragment() {
         binding.screenSaverTypeLayout.isVisible = binding.screenSaver.isChecked
         binding.wakeOnProximity.isVisible = binding.screenSaver.isChecked && device.hasProximitySensor
         binding.minBrightnessScreenSaverLayout.isVisible = binding.screenSaver.isChecked
+        binding.screenSaverPixelShift.isVisible = binding.screenSaver.isChecked
 
         //Brightness management
         binding.brightnessSettingLayout.isVisible = !binding.automaticBrightness.isChecked
@@ -229,6 +231,7 @@ class SettingsFragment : Fragment() {
             binding.screenSaverTypeLayout.isVisible = isChecked
             binding.wakeOnProximity.isVisible = isChecked
             binding.minBrightnessScreenSaverLayout.isVisible = isChecked
+            binding.screenSaverPixelShift.isVisible = isChecked
         }
 
         binding.screenSaverDelay.setOnEditorActionListener { _, actionId, _ ->
@@ -309,6 +312,7 @@ class SettingsFragment : Fragment() {
             putInt(SP_SCREEN_SAVER_ID, binding.screenSaverType.selectedItemPosition)
             putBoolean(SP_WAKE_ON_PROXIMITY, binding.wakeOnProximity.isChecked && device.hasProximitySensor)
             putInt(SP_SCREEN_SAVER_MIN_BRIGHTNESS, binding.screensaverMinBrightness.value.toInt())
+            putBoolean(SP_SCREEN_SAVER_PIXEL_SHIFT, binding.screenSaverPixelShift.isChecked)
 
             //Http Server
             putBoolean(SP_HTTP_SERVER_ENABLED, binding.httpServerEnabled.isChecked)
@@ -317,7 +321,7 @@ class SettingsFragment : Fragment() {
         if (!binding.httpServerEnabled.isChecked && mHttpServer.isAlive) mHttpServer.stop()
         else if (binding.httpServerEnabled.isChecked && !mHttpServer.isAlive) mHttpServer.start()
 
-        LocalBroadcastManager.getInstance(ShellyElevateApplication.mApplicationContext).sendBroadcast(Intent(INTENT_SETTINGS_CHANGED))
+        mEventBus.postSettingsChanged()
         Toast.makeText(requireContext(), getString(R.string.settings_saved), Toast.LENGTH_SHORT).show()
     }
 
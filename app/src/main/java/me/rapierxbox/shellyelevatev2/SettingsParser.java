@@ -1,13 +1,10 @@
 package me.rapierxbox.shellyelevatev2;
 
-import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mApplicationContext;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mSharedPreferences;
 
-import android.content.Intent;
 import android.content.SharedPreferences;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -97,7 +94,6 @@ public class SettingsParser {
         editor.apply();
 
         // Notify listeners that settings changed (keeps components in sync)
-        LocalBroadcastManager.getInstance(mApplicationContext)
-                .sendBroadcast(new Intent(Constants.INTENT_SETTINGS_CHANGED));
+        mEventBus.postSettingsChanged();
     }
 }
@@ -2,6 +2,8 @@ package me.rapierxbox.shellyelevatev2;
 
 import static fi.iki.elonen.NanoHTTPD.*;
 import static me.rapierxbox.shellyelevatev2.Constants.SHARED_PREFERENCES_NAME;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_HARDWARE_BACKEND;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_HARDWARE_SCRIPT;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_HTTP_SERVER_ENABLED;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_SWITCH_ON_SWIPE;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_MEDIA_ENABLED;
@@ -12,28 +14,37 @@ import android.content.SharedPreferences;
 import android.util.Log;
 import android.os.StrictMode;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import fi.iki.elonen.NanoHTTPD;
+import me.rapierxbox.shellyelevatev2.events.EventBus;
+import me.rapierxbox.shellyelevatev2.hardware.DeviceHardwareBackend;
+import me.rapierxbox.shellyelevatev2.hardware.HardwareBackend;
+import me.rapierxbox.shellyelevatev2.hardware.SensorScript;
+import me.rapierxbox.shellyelevatev2.hardware.SimulatedHardwareBackend;
+import me.rapierxbox.shellyelevatev2.helper.ClimateSampler;
 import me.rapierxbox.shellyelevatev2.helper.DeviceHelper;
 import me.rapierxbox.shellyelevatev2.helper.DeviceSensorManager;
 import me.rapierxbox.shellyelevatev2.helper.MediaHelper;
+import me.rapierxbox.shellyelevatev2.helper.RelayStateTracker;
 import me.rapierxbox.shellyelevatev2.helper.ScreenManager;
 import me.rapierxbox.shellyelevatev2.helper.SwipeHelper;
 import me.rapierxbox.shellyelevatev2.mqtt.MQTTServer;
 import me.rapierxbox.shellyelevatev2.screensavers.ScreenSaverManager;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-import android.content.BroadcastReceiver;
-import android.content.Intent;
-import android.content.IntentFilter;
 
 public class ShellyElevateApplication extends Application {
     public static HttpServer mHttpServer;
 
+    public static EventBus mEventBus;
+    public static HardwareBackend mHardwareBackend;
+
     public static DeviceHelper mDeviceHelper;
+    public static ClimateSampler mClimateSampler;
+    public static RelayStateTracker mRelayStateTracker;
     public static DeviceSensorManager mDeviceSensorManager;
     public static SwipeHelper mSwipeHelper;
     public static ShellyElevateJavascriptInterface mShellyElevateJavascriptInterface;
@@ -48,7 +59,7 @@ public class ShellyElevateApplication extends Application {
     private static long applicationStartTime;
     private ScheduledExecutorService httpWatchdog;
     private int retryDelaySeconds = 5;
-    private BroadcastReceiver httpSettingsReceiver;
+    private EventBus.SettingsListener httpSettingsListener;
 
     @Override
     public void onCreate() {
@@ -84,16 +95,19 @@ public class ShellyElevateApplication extends Application {
         try {
             mApplicationContext = getApplicationContext();
             mSharedPreferences = getSharedPreferences(SHARED_PREFERENCES_NAME, MODE_PRIVATE);
+            mEventBus = new EventBus();
 
             var deviceModel = DeviceModel.getReportedDevice();
             Log.i("ShellyElevateApplication", "Device: " + deviceModel.modelName);
 
-            mDeviceHelper = new DeviceHelper();
+            mHardwareBackend = createHardwareBackend();
+            mDeviceHelper = new DeviceHelper(mHardwareBackend);
+            mClimateSampler = new ClimateSampler(mSharedPreferences);
             mScreenSaverManager = new ScreenSaverManager(this);
             mScreenManager = new ScreenManager(this);
 
             // Sensors Init
-            mDeviceSensorManager = new DeviceSensorManager(this);
+            mDeviceSensorManager = new DeviceSensorManager(this, mHardwareBackend);
 
             if (mSharedPreferences.getBoolean(SP_SWITCH_ON_SWIPE, true))
                 mSwipeHelper = new SwipeHelper();
@@ -105,6 +119,7 @@ public class ShellyElevateApplication extends Application {
             }
 
             mMQTTServer = new MQTTServer();
+            mRelayStateTracker = new RelayStateTracker(mSharedPreferences);
 
             // HTTP Server
             mHttpServer = new HttpServer();
@@ -128,9 +143,10 @@ public class ShellyElevateApplication extends Application {
         }
 
         // React to settings changes to start/stop HTTP server and watchdog
-        httpSettingsReceiver = new BroadcastReceiver() {
+        // Binds/stops sockets, so keep it off the main thread
+        httpSettingsListener = new EventBus.SettingsListener() {
             @Override
-            public void onReceive(Context context, Intent intent) {
+            public void onSettingsChanged() {
                 boolean enabled = mSharedPreferences.getBoolean(SP_HTTP_SERVER_ENABLED, true);
                 if (!enabled) {
                     if (mHttpServer != null && mHttpServer.isAlive()) mHttpServer.stop();
@@ -149,12 +165,30 @@ public class ShellyElevateApplication extends Application {
                 }
             }
         };
-        LocalBroadcastManager.getInstance(this)
-                .registerReceiver(httpSettingsReceiver, new IntentFilter(Constants.INTENT_SETTINGS_CHANGED));
+        mEventBus.settings.register(httpSettingsListener, EventBus.Delivery.BACKGROUND);
 
         Log.i("ShellyElevateV2", "Application started");
     }
 
+    /**
+     * Select the hardware backend at startup: the real panel, or a simulated one (temp sysfs tree plus a sensor
+     * script) for load testing on hardware that isn't a wall display.
+     */
+    private HardwareBackend createHardwareBackend() {
+        if ("simulated".equals(mSharedPreferences.getString(SP_HARDWARE_BACKEND, "device"))) {
+            try {
+                String scriptPath = mSharedPreferences.getString(SP_HARDWARE_SCRIPT, "");
+                SensorScript script = scriptPath.isEmpty() ? SensorScript.defaultScript() : SensorScript.load(new File(scriptPath));
+                HardwareBackend backend = SimulatedHardwareBackend.create(getCacheDir(), script);
+                Log.w("ShellyElevateApplication", "Using simulated hardware");
+                return backend;
+            } catch (IOException e) {
+                Log.e("ShellyElevateApplication", "Can't create simulated hardware, falling back to the device", e);
+            }
+        }
+        return new DeviceHardwareBackend(this);
+    }
+
     private void tryStartHttpServer() {
         try {
             if (mHttpServer == null) {
@@ -200,6 +234,10 @@ public class ShellyElevateApplication extends Application {
     public void onTerminate() {
         mHttpServer.onDestroy();
         mDeviceSensorManager.onDestroy();
+        mClimateSampler.onDestroy();
+        mRelayStateTracker.onDestroy();
+        mDeviceHelper.onDestroy();
+        mHardwareBackend.close();
 
         mScreenSaverManager.stopScreenSaver();
         mScreenSaverManager.onDestroy();
@@ -213,9 +251,10 @@ public class ShellyElevateApplication extends Application {
             httpWatchdog.shutdownNow();
         }
 
-        if (httpSettingsReceiver != null) {
-            LocalBroadcastManager.getInstance(this).unregisterReceiver(httpSettingsReceiver);
+        if (httpSettingsListener != null) {
+            mEventBus.settings.unregister(httpSettingsListener);
         }
+        mEventBus.onDestroy();
 
         Log.i("ShellyElevateV2", "BYEEEEEEEEEEEEEEEEEEEE :)");
 
@@ -1,16 +1,15 @@
 package me.rapierxbox.shellyelevatev2;
 
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mClimateSampler;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceHelper;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceSensorManager;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mSharedPreferences;
 import static me.rapierxbox.shellyelevatev2.Constants.*;
 
-import android.content.Intent;
 import android.util.Log;
 import android.webkit.JavascriptInterface;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-
 import java.util.HashMap;
 import java.util.Map;
 
@@ -45,11 +44,19 @@ public class ShellyElevateJavascriptInterface {
     }
 
     @JavascriptInterface public double getTemperature() {
-        return mDeviceHelper.getTemperature();
+        return mClimateSampler.getLatest().temperature;
+    }
+
+    @JavascriptInterface public double getTemperature(int maxAgeMs) {
+        return mClimateSampler.getLatest(maxAgeMs).temperature;
     }
 
     @JavascriptInterface public double getHumidity() {
-        return mDeviceHelper.getHumidity();
+        return mClimateSampler.getLatest().humidity;
+    }
+
+    @JavascriptInterface public double getHumidity(int maxAgeMs) {
+        return mClimateSampler.getLatest(maxAgeMs).humidity;
     }
 
     @JavascriptInterface public int getScreenBrightness() {
@@ -146,9 +153,7 @@ public class ShellyElevateJavascriptInterface {
     }
 
     private void sendJavascript(String javascript){
-        Intent intent = new Intent(INTENT_WEBVIEW_INJECT_JAVASCRIPT);
-        intent.putExtra("javascript", javascript);
-        LocalBroadcastManager.getInstance(ShellyElevateApplication.mApplicationContext).sendBroadcast(intent);
+        mEventBus.postJavascript(javascript);
     }
 
     public void onScreenOn() {
@@ -177,4 +182,8 @@ public class ShellyElevateJavascriptInterface {
     public void onButtonPressed(int i) {
         triggerEvent("onButtonPressed", i);
     }
+
+    public void onRelayChanged(int num, boolean state) {
+        triggerEvent("onRelayChanged", num, state);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package me.rapierxbox.shellyelevatev2.events;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * In-process event bus for the hot paths that used to go through LocalBroadcastManager.
+ * - One listener interface per event type, payloads are primitives: no Intent/Bundle per event
+ * - Listener lists are copy-on-write arrays: posting never locks, {@link Delivery#INLINE} listeners run without a queue hop
+ * - Each listener picks where it runs: the main thread, the shared background thread, or inline on the poster
+ */
+public final class EventBus {
+
+    private static final String TAG = "EventBus";
+
+    public enum Delivery {
+        /** Posted to the main looper, like LocalBroadcastManager did. */
+        MAIN,
+        /** Posted to a single low-priority bus thread, in order. */
+        BACKGROUND,
+        /** Called on the posting thread; the listener must be cheap and thread-safe. */
+        INLINE
+    }
+
+    /** Every raw light sample; {@code timestampNanos} is the sensor time, see HardwareBackend.SensorListener. */
+    public interface LuxListener { void onLux(float lux, long timestampNanos); }
+
+    public interface ProximityListener { void onProximity(float distance); }
+
+    public interface RelayListener { void onRelayChanged(int num, boolean state); }
+
+    /** Screen turned on/off (also a request to ScreenManager). */
+    public interface ScreenListener { void onScreenChanged(boolean on); }
+
+    public interface ScreenSaverListener { void onScreenSaverChanged(boolean running); }
+
+    /** Show/hide the clock screensaver layers in MainActivity. */
+    public interface ClockOverlayListener {
+        int HIDDEN = 0;
+        int TIME = 1;
+        int TIME_AND_DATE = 2;
+        int GLYPH_TIME = 3;
+
+        void onClockOverlay(int mode);
+    }
+
+    public interface SettingsListener { void onSettingsChanged(); }
+
+    public interface JavascriptListener { void onJavascript(String javascript); }
+
+    /** Hardware keys that don't come through the input system (e.g. a simulated backend). */
+    public interface KeyListener { void onKey(int keyCode, boolean down); }
+
+    public final Channel<LuxListener> lux = new Channel<>();
+    public final Channel<ProximityListener> proximity = new Channel<>();
+    public final Channel<RelayListener> relay = new Channel<>();
+    public final Channel<ScreenListener> screen = new Channel<>();
+    public final Channel<ScreenSaverListener> screenSaver = new Channel<>();
+    public final Channel<ClockOverlayListener> clockOverlay = new Channel<>();
+    public final Channel<SettingsListener> settings = new Channel<>();
+    public final Channel<JavascriptListener> javascript = new Channel<>();
+    public final Channel<KeyListener> key = new Channel<>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mainExecutor = mainHandler::post;
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "EventBus");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void postLux(float value, long timestampNanos) {
+        post(lux, l -> l.onLux(value, timestampNanos), "Lux");
+    }
+
+    public void postProximity(float distance) {
+        post(proximity, l -> l.onProximity(distance), "Proximity");
+    }
+
+    public void postRelay(int num, boolean state) {
+        post(relay, l -> l.onRelayChanged(num, state), "Relay");
+    }
+
+    public void postScreen(boolean on) {
+        post(screen, l -> l.onScreenChanged(on), "Screen");
+    }
+
+    public void postScreenSaver(boolean running) {
+        post(screenSaver, l -> l.onScreenSaverChanged(running), "Screen saver");
+    }
+
+    public void postClockOverlay(int mode) {
+        post(clockOverlay, l -> l.onClockOverlay(mode), "Clock overlay");
+    }
+
+    public void postSettingsChanged() {
+        post(settings, SettingsListener::onSettingsChanged, "Settings");
+    }
+
+    public void postJavascript(String code) {
+        post(javascript, l -> l.onJavascript(code), "Javascript");
+    }
+
+    public void postKey(int keyCode, boolean down) {
+        post(key, l -> l.onKey(keyCode, down), "Key");
+    }
+
+    /** Deliver {@code event} to every listener of {@code channel}; {@code what} names the event type in logs. */
+    private <L> void post(Channel<L> channel, Consumer<L> event, String what) {
+        for (Registration<L> r : channel.registrations) {
+            L l = r.listener;
+            if (r.delivery == Delivery.INLINE) {
+                try {
+                    event.accept(l);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, what + " listener failed", e);
+                }
+            } else {
+                dispatch(r.delivery, () -> event.accept(l));
+            }
+        }
+    }
+
+    private void dispatch(Delivery delivery, Runnable task) {
+        Executor executor = delivery == Delivery.MAIN ? mainExecutor : backgroundExecutor;
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Listener failed", e);
+            }
+        });
+    }
+
+    public void onDestroy() {
+        mainHandler.removeCallbacksAndMessages(null);
+        backgroundExecutor.shutdownNow();
+    }
+
+    static final class Registration<L> {
+        final L listener;
+        final Delivery delivery;
+
+        Registration(L listener, Delivery delivery) {
+            this.listener = listener;
+            this.delivery = delivery;
+        }
+    }
+
+    /** Listeners of one event type. Registration copies the array, posting just reads it. */
+    public static final class Channel<L> {
+        @SuppressWarnings("unchecked")
+        volatile Registration<L>[] registrations = new Registration[0];
+
+        public synchronized void register(L listener, Delivery delivery) {
+            Registration<L>[] current = registrations;
+            @SuppressWarnings("unchecked")
+            Registration<L>[] updated = new Registration[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = new Registration<>(listener, delivery);
+            registrations = updated;
+        }
+
+        public synchronized void unregister(L listener) {
+            Registration<L>[] current = registrations;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].listener != listener) continue;
+
+                @SuppressWarnings("unchecked")
+                Registration<L>[] updated = new Registration[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                registrations = updated;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import me.rapierxbox.shellyelevatev2.DeviceModel;
+
+/**
+ * The real panel: sysfs at "/" plus the light and proximity sensors from {@link SensorManager}.
+ * Keys reach the Activity through the input system, so this backend never reports them.
+ * Sensor events are delivered on a dedicated low-priority thread, never on the main thread.
+ */
+public class DeviceHardwareBackend extends SysfsHardwareBackend implements SensorEventListener {
+
+    private static final String TAG = "DeviceHardwareBackend";
+
+    private final SensorManager sensorManager;
+    private final DeviceModel device = DeviceModel.getReportedDevice();
+    private final Sensor lightSensor;
+    private final Sensor proximitySensor;
+    private final HandlerThread sensorThread;
+    private final Handler sensorHandler;
+    private volatile SensorListener listener;
+
+    public DeviceHardwareBackend(Context context) {
+        super("");
+        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        sensorThread = new HandlerThread("SensorThread", Process.THREAD_PRIORITY_BACKGROUND);
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+
+        for (Sensor sensor : sensorManager.getSensorList(Sensor.TYPE_ALL)) {
+            Log.d(TAG, sensor.getName());
+        }
+
+        lightSensor = sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
+        Log.d(TAG, "Has proximity sensor: " + device.hasProximitySensor);
+        proximitySensor = device.hasProximitySensor ? sensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY) : null;
+        if (proximitySensor != null) {
+            Log.d(TAG, "Default proximity sensor: " + proximitySensor + " - Max: " + proximitySensor.getMaximumRange());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "device";
+    }
+
+    @Override
+    public boolean hasProximitySensor() {
+        return proximitySensor != null;
+    }
+
+    @Override
+    public float getMaxProximityRange() {
+        return proximitySensor != null ? proximitySensor.getMaximumRange() : super.getMaxProximityRange();
+    }
+
+    @Override
+    public synchronized void startSensors(SensorListener listener) {
+        this.listener = listener;
+        registerLightSensor(getSamplingProfile());
+        if (proximitySensor != null) {
+            sensorManager.registerListener(this, proximitySensor, SensorManager.SENSOR_DELAY_NORMAL, sensorHandler);
+        }
+    }
+
+    @Override
+    public synchronized void stopSensors() {
+        sensorManager.unregisterListener(this);
+        listener = null;
+    }
+
+    @Override
+    public synchronized void setSamplingProfile(SamplingProfile profile) {
+        if (profile == getSamplingProfile()) return;
+        super.setSamplingProfile(profile);
+        if (listener == null || lightSensor == null) return;
+
+        sensorManager.unregisterListener(this, lightSensor);
+        registerLightSensor(profile);
+        // hand over what's still sitting in the FIFO, so waking up doesn't start from a 30 s old reading; the batch
+        // arrives oldest first and every sample reaches the lux filter, so the newest one is what the filter ends on
+        if (profile == SamplingProfile.AWAKE) sensorManager.flush(this);
+    }
+
+    private void registerLightSensor(SamplingProfile profile) {
+        if (lightSensor == null) return;
+        sensorManager.registerListener(this, lightSensor, profile.samplingPeriodUs, profile.maxReportLatencyUs, sensorHandler);
+        Log.i(TAG, "Light sensor profile " + profile + " (FIFO: " + lightSensor.getFifoMaxEventCount() + " events)");
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        sensorThread.quitSafely();
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        SensorListener l = listener;
+        if (event == null || l == null) return;
+
+        switch (event.sensor.getType()) {
+            case Sensor.TYPE_LIGHT:
+                // elapsedRealtimeNanos base, set when the sensor sampled (before any FIFO batching)
+                l.onLight(event.values[0], event.timestamp);
+                break;
+            case Sensor.TYPE_PROXIMITY:
+                l.onProximity(event.values[0]);
+                break;
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // Ignore
+    }
+}
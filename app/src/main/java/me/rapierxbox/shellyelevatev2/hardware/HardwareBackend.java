@@ -0,0 +1,74 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Everything the app reads from or writes to the panel hardware: relays, backlight, climate, light, proximity and keys.
+ * Implementations other than {@link DeviceHardwareBackend} must stay free of Android classes, so the I/O paths can be
+ * exercised on a plain JVM.
+ */
+public interface HardwareBackend {
+
+    /** Sensor and key callbacks, delivered on a backend-defined thread. */
+    interface SensorListener {
+        /**
+         * @param timestampNanos monotonic time the sample was taken, not when it arrived: samples of a batch
+         *                       delivered at once keep their original spacing
+         */
+        void onLight(float lux, long timestampNanos);
+
+        void onProximity(float distance);
+
+        /** Key events that don't reach the Activity on their own (e.g. scripted presses). */
+        void onKey(int keyCode, boolean down);
+    }
+
+    String getName();
+
+    // Relays
+    int getRelayCount();
+
+    boolean readRelay(int num);
+
+    boolean writeRelay(int num, boolean state);
+
+    /** Files backing a relay, so changes can be observed. */
+    List<String> getRelayFiles(int num);
+
+    // Backlight
+    boolean hasBacklight();
+
+    int readBacklight();
+
+    /** @param value 0-255, clamped */
+    boolean writeBacklight(int value);
+
+    // Climate
+
+    /**
+     * Read the raw SHT3x counts, {@code out[0]} humidity and {@code out[1]} temperature.
+     *
+     * @return false if the sensor couldn't be read
+     */
+    boolean readClimate(int[] out);
+
+    // Light, proximity and keys
+    boolean hasProximitySensor();
+
+    float getMaxProximityRange();
+
+    void startSensors(SensorListener listener);
+
+    void stopSensors();
+
+    /** Switch the light sensor rate; takes effect immediately if sensors are running. */
+    void setSamplingProfile(SamplingProfile profile);
+
+    SamplingProfile getSamplingProfile();
+
+    /** Last I/O error of a failed write, for logging by the caller. */
+    IOException getLastError();
+
+    void close();
+}
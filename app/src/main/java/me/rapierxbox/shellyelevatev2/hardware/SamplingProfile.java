@@ -0,0 +1,21 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+/**
+ * How often the light sensor reports, depending on whether anybody is looking at the screen.
+ * Proximity isn't part of the profile: it always reports at full rate so it can wake the panel.
+ */
+public enum SamplingProfile {
+    /** Screen on: ~5 Hz (SENSOR_DELAY_NORMAL), delivered right away. */
+    AWAKE(200_000, 0),
+    /** Screen off or screensaver: at most one reading per 2 s, held in the sensor FIFO for up to 30 s. */
+    ASLEEP(2_000_000, 30_000_000);
+
+    public final int samplingPeriodUs;
+    /** Batching window for sensors with a hardware FIFO; sensors without one ignore it. */
+    public final int maxReportLatencyUs;
+
+    SamplingProfile(int samplingPeriodUs, int maxReportLatencyUs) {
+        this.samplingPeriodUs = samplingPeriodUs;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+    }
+}
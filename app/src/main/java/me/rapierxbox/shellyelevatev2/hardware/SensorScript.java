@@ -0,0 +1,139 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Scripted hardware activity for {@link SimulatedHardwareBackend}, one step per line:
+ * <pre>
+ * # delayMs  kind       arguments
+ * 200        light      120.5
+ * 0          proximity  0
+ * 0          key        131 down
+ * 120        key        131 up
+ * 0          relay      0 1         (external relay change)
+ * 0          climate    31457 26214 (raw humidity, raw temperature)
+ * </pre>
+ * Delays are relative to the previous step. The script restarts from the top once it reaches the end.
+ */
+public final class SensorScript {
+
+    public enum Kind { LIGHT, PROXIMITY, KEY, RELAY, CLIMATE }
+
+    public static final class Step {
+        public final long delayMs;
+        public final Kind kind;
+        public final float value;
+        public final int arg0;
+        public final int arg1;
+
+        Step(long delayMs, Kind kind, float value, int arg0, int arg1) {
+            this.delayMs = delayMs;
+            this.kind = kind;
+            this.value = value;
+            this.arg0 = arg0;
+            this.arg1 = arg1;
+        }
+    }
+
+    private final List<Step> steps;
+
+    private SensorScript(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public static SensorScript load(File file) throws IOException {
+        try (Reader reader = new FileReader(file)) {
+            return parse(reader);
+        }
+    }
+
+    public static SensorScript parse(String script) throws IOException {
+        return parse(new StringReader(script));
+    }
+
+    public static SensorScript parse(Reader reader) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            String[] parts = line.split("\\s+");
+            try {
+                steps.add(parseStep(parts));
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid sensor script line " + lineNumber + ": " + line, e);
+            }
+        }
+        if (steps.isEmpty()) throw new IOException("Empty sensor script");
+        return new SensorScript(steps);
+    }
+
+    private static Step parseStep(String[] parts) {
+        long delayMs = Long.parseLong(parts[0]);
+        Kind kind = Kind.valueOf(parts[1].toUpperCase(Locale.ROOT));
+        switch (kind) {
+            case LIGHT:
+            case PROXIMITY:
+                return new Step(delayMs, kind, Float.parseFloat(parts[2]), 0, 0);
+            case KEY:
+                return new Step(delayMs, kind, 0f, Integer.parseInt(parts[2]), "down".equalsIgnoreCase(parts[3]) ? 1 : 0);
+            case RELAY:
+            case CLIMATE:
+                return new Step(delayMs, kind, 0f, Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            default:
+                throw new IllegalArgumentException("Unknown kind " + parts[1]);
+        }
+    }
+
+    /**
+     * A two minute loop with the timing of the real panel: light samples every 200 ms (SENSOR_DELAY_NORMAL)
+     * ramping between dusk and daylight, someone walking up every minute, a button press, an external relay
+     * flip and a climate update every 5 s.
+     */
+    public static SensorScript defaultScript() {
+        List<Step> steps = new ArrayList<>();
+        final int samples = 600; // 120 s at 200 ms
+        for (int i = 0; i < samples; i++) {
+            double phase = Math.sin(Math.PI * i / samples);
+            float lux = (float) (5 + 795 * phase * phase + ((i * 7919) % 13) - 6); // deterministic jitter
+            steps.add(new Step(200, Kind.LIGHT, Math.max(0f, lux), 0, 0));
+
+            if (i % 25 == 0) { // every 5 s
+                int rawHumidity = 29000 + (i * 31) % 2000;
+                int rawTemperature = 25500 + (i * 17) % 800;
+                steps.add(new Step(0, Kind.CLIMATE, 0f, rawHumidity, rawTemperature));
+            }
+            if (i % 300 == 100) { // approach, stay 3 s, leave
+                steps.add(new Step(0, Kind.PROXIMITY, 0f, 0, 0));
+            } else if (i % 300 == 115) {
+                steps.add(new Step(0, Kind.PROXIMITY, 5f, 0, 0));
+            }
+            if (i == 150) {
+                steps.add(new Step(0, Kind.KEY, 0f, 131, 1));
+                steps.add(new Step(120, Kind.KEY, 0f, 131, 0));
+            }
+            if (i == 400) steps.add(new Step(0, Kind.RELAY, 0f, 0, 1));
+            if (i == 550) steps.add(new Step(0, Kind.RELAY, 0f, 0, 0));
+        }
+        return new SensorScript(steps);
+    }
+}
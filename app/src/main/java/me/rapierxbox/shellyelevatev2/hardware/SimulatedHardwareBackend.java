@@ -0,0 +1,198 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A panel without a panel: the sysfs tree lives in a temp directory and sensors, keys, external relay changes and
+ * climate drift come from a {@link SensorScript}. Reads and writes go through the same {@link SysfsHardwareBackend}
+ * code as on the device, so I/O behaves like the real attributes (real files, real syscalls).
+ * Hardware accesses are delayed by the panel's latencies ({@link #setIoLatency}), since regular files answer in
+ * microseconds where the relay driver and the SHT3x take milliseconds.
+ * Android-free; usable from a plain JVM.
+ */
+public class SimulatedHardwareBackend extends SysfsHardwareBackend {
+
+    private static final Logger LOG = Logger.getLogger("SimulatedHardwareBackend");
+    private static final float MAX_PROXIMITY_RANGE = 5.0f;
+
+    // approximate panel timing: relay driver write, backlight PWM update, SHT3x single shot (datasheet max, high repeatability)
+    public static final long DEFAULT_RELAY_WRITE_MICROS = 2_000;
+    public static final long DEFAULT_BACKLIGHT_WRITE_MICROS = 300;
+    public static final long DEFAULT_CLIMATE_READ_MICROS = 15_000;
+
+    private final SensorScript script;
+    private final boolean deleteOnClose;
+    private ScheduledExecutorService scheduler;
+    private volatile SensorListener listener;
+    private volatile long relayWriteNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_RELAY_WRITE_MICROS);
+    private volatile long backlightWriteNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_BACKLIGHT_WRITE_MICROS);
+    private volatile long climateReadNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_CLIMATE_READ_MICROS);
+
+    private SimulatedHardwareBackend(File root, SensorScript script, boolean deleteOnClose) {
+        super(root.getAbsolutePath(), true);
+        this.script = script;
+        this.deleteOnClose = deleteOnClose;
+    }
+
+    /**
+     * Create a fresh sysfs tree under {@code parentDir} (relays off, backlight at 128, 24.5 C, 45%).
+     * The tree is deleted on {@link #close()}.
+     */
+    public static SimulatedHardwareBackend create(File parentDir, SensorScript script) throws IOException {
+        File root = File.createTempFile("sysfs", "", parentDir);
+        if (!root.delete() || !root.mkdirs()) throw new IOException("Can't create " + root);
+
+        for (String[] candidates : RELAY_FILES) {
+            writeFile(new File(root, candidates[0]), "0\n");
+        }
+        writeFile(new File(root, BACKLIGHT_FILES[0]), "128\n");
+        writeFile(new File(root, CLIMATE_FILE), "29491:25768\n");
+
+        return new SimulatedHardwareBackend(root, script, true);
+    }
+
+    /** Use an existing tree, e.g. one copied from a real panel. */
+    public static SimulatedHardwareBackend open(File root, SensorScript script) {
+        return new SimulatedHardwareBackend(root, script, false);
+    }
+
+    /** Latencies added to each hardware access, in microseconds; 0 disables them (e.g. for unit tests). */
+    public void setIoLatency(long relayWriteMicros, long backlightWriteMicros, long climateReadMicros) {
+        relayWriteNanos = TimeUnit.MICROSECONDS.toNanos(relayWriteMicros);
+        backlightWriteNanos = TimeUnit.MICROSECONDS.toNanos(backlightWriteMicros);
+        climateReadNanos = TimeUnit.MICROSECONDS.toNanos(climateReadMicros);
+    }
+
+    @Override
+    public String getName() {
+        return "simulated";
+    }
+
+    @Override
+    public boolean writeRelay(int num, boolean state) {
+        delay(relayWriteNanos);
+        return super.writeRelay(num, state);
+    }
+
+    @Override
+    public boolean writeBacklight(int value) {
+        delay(backlightWriteNanos);
+        return super.writeBacklight(value);
+    }
+
+    @Override
+    public boolean readClimate(int[] out) {
+        delay(climateReadNanos);
+        return super.readClimate(out);
+    }
+
+    @Override
+    public boolean hasProximitySensor() {
+        return true;
+    }
+
+    @Override
+    public float getMaxProximityRange() {
+        return MAX_PROXIMITY_RANGE;
+    }
+
+    @Override
+    public synchronized void startSensors(SensorListener listener) {
+        stopSensors();
+        this.listener = listener;
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduleStep(scheduler, 0);
+    }
+
+    @Override
+    public synchronized void stopSensors() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        listener = null;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (deleteOnClose) delete(new File(getRoot()));
+    }
+
+    private void scheduleStep(ScheduledExecutorService executor, int index) {
+        if (executor.isShutdown()) return;
+
+        List<SensorScript.Step> steps = script.getSteps();
+        SensorScript.Step step = steps.get(index);
+        executor.schedule(() -> {
+            run(step);
+            scheduleStep(executor, (index + 1) % steps.size());
+        }, step.delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(SensorScript.Step step) {
+        SensorListener l = listener;
+        try {
+            switch (step.kind) {
+                case LIGHT:
+                    if (l != null) l.onLight(step.value, System.nanoTime());
+                    break;
+                case PROXIMITY:
+                    if (l != null) l.onProximity(step.value);
+                    break;
+                case KEY:
+                    if (l != null) l.onKey(step.arg0, step.arg1 != 0);
+                    break;
+                case RELAY:
+                    // written behind the app's back, like the stock firmware would
+                    List<String> files = getRelayFiles(step.arg0);
+                    if (!files.isEmpty()) writeFile(new File(files.get(0)), step.arg1 != 0 ? "1\n" : "0\n");
+                    break;
+                case CLIMATE:
+                    writeFile(new File(getRoot() + CLIMATE_FILE), step.arg0 + ":" + step.arg1 + "\n");
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            // keep the script running, a failed step is logged like a failed sysfs access on the device
+            LOG.log(Level.WARNING, "Step " + step.kind + " failed", e);
+        }
+    }
+
+    private static void delay(long nanos) {
+        if (nanos <= 0) return;
+        // parkNanos may return early (spurious wakeup); the deadline keeps the latency
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    private static void writeFile(File file, String content) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) throw new IOException("Can't create " + parent);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) delete(child);
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
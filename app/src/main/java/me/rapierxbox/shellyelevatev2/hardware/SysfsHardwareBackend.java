@@ -0,0 +1,205 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import me.rapierxbox.shellyelevatev2.helper.SysfsAttribute;
+
+/**
+ * Relays, backlight and climate over the panel's sysfs attributes.
+ * All paths are resolved against {@code root}, so the same code runs against a copy of the tree in a temp directory.
+ * Sensors aren't part of sysfs; subclasses provide them.
+ */
+public class SysfsHardwareBackend implements HardwareBackend {
+
+    static final String[][] RELAY_FILES = {
+            {
+                    "/sys/devices/platform/leds/green_enable",
+                    "/sys/class/strelay/relay1"
+            },
+            {
+                    "/sys/devices/platform/leds/red_enable",
+                    "/sys/class/strelay/relay2"
+            }
+    };
+
+    static final String CLIMATE_FILE = "/sys/devices/platform/sht3x-user/sht3x_access";
+    static final String[] BACKLIGHT_FILES = {
+            "/sys/devices/platform/leds-mt65xx/leds/lcd-backlight/brightness",
+            "/sys/devices/platform/sprd_backlight/backlight/sprd_backlight/brightness",
+            "/sys/devices/platform/backlight/backlight/backlight/brightness"
+    };
+
+    private static final byte[] RELAY_ON = {'1'};
+    private static final byte[] RELAY_OFF = {'0'};
+    // ASCII encodings of every backlight level, so a fade frame is a single write() of a ready buffer
+    private static final byte[][] BACKLIGHT_VALUES = new byte[256][];
+
+    static {
+        for (int i = 0; i < BACKLIGHT_VALUES.length; i++) {
+            BACKLIGHT_VALUES[i] = Integer.toString(i).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final String root;
+    private final boolean truncateOnWrite;
+    // sysfs attributes are opened once and reused for every read/write
+    private final Map<String, SysfsAttribute> attributes = new ConcurrentHashMap<>();
+    private final SysfsAttribute backlight;
+    private final SysfsAttribute climate;
+    private volatile IOException lastError;
+    private volatile SamplingProfile samplingProfile = SamplingProfile.AWAKE;
+
+    public SysfsHardwareBackend(String root) {
+        this(root, false);
+    }
+
+    /**
+     * @param truncateOnWrite true when the tree is made of regular files; sysfs replaces the whole value on every
+     *                        write, a regular file would keep the tail of a longer previous value
+     */
+    protected SysfsHardwareBackend(String root, boolean truncateOnWrite) {
+        this.root = root;
+        this.truncateOnWrite = truncateOnWrite;
+
+        String backlightFile = "";
+        for (String candidate : BACKLIGHT_FILES) {
+            if (new File(root + candidate).exists()) {
+                backlightFile = root + candidate;
+            }
+        }
+        backlight = attribute(backlightFile);
+        climate = attribute(root + CLIMATE_FILE);
+    }
+
+    @Override
+    public String getName() {
+        return "sysfs";
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean hasBacklight() {
+        return !backlight.getPath().isEmpty();
+    }
+
+    @Override
+    public int getRelayCount() {
+        return RELAY_FILES.length;
+    }
+
+    @Override
+    public boolean readRelay(int num) {
+        if (num < 0 || num >= RELAY_FILES.length) return false;
+
+        boolean relayState = false;
+        for (String relayFile : RELAY_FILES[num]) {
+            relayState |= attribute(root + relayFile).contains((byte) '1');
+        }
+        return relayState;
+    }
+
+    @Override
+    public boolean writeRelay(int num, boolean state) {
+        if (num < 0 || num >= RELAY_FILES.length) return false;
+
+        boolean ok = true;
+        for (String relayFile : RELAY_FILES[num]) {
+            SysfsAttribute attribute = attribute(root + relayFile);
+            if (!attribute.exists()) continue; // only one of the candidates exists on a given model
+            ok &= check(attribute, attribute.write(state ? RELAY_ON : RELAY_OFF));
+        }
+        return ok;
+    }
+
+    @Override
+    public List<String> getRelayFiles(int num) {
+        List<String> files = new ArrayList<>();
+        if (num < 0 || num >= RELAY_FILES.length) return files;
+
+        for (String relayFile : RELAY_FILES[num]) {
+            if (attribute(root + relayFile).exists()) files.add(root + relayFile);
+        }
+        return files;
+    }
+
+    @Override
+    public int readBacklight() {
+        return backlight.readInt(0);
+    }
+
+    @Override
+    public boolean writeBacklight(int value) {
+        byte[] ascii = BACKLIGHT_VALUES[Math.max(0, Math.min(value, BACKLIGHT_VALUES.length - 1))];
+        return check(backlight, backlight.write(ascii));
+    }
+
+    @Override
+    public boolean readClimate(int[] out) {
+        // sht3x_access reports "<humidity>:<temperature>" as raw 16 bit counts
+        return climate.readUnsignedInts(out) >= 2;
+    }
+
+    @Override
+    public boolean hasProximitySensor() {
+        return false;
+    }
+
+    @Override
+    public float getMaxProximityRange() {
+        return 1.0f;
+    }
+
+    @Override
+    public void startSensors(SensorListener listener) {
+        // no sensors in sysfs
+    }
+
+    @Override
+    public void stopSensors() {
+    }
+
+    @Override
+    public void setSamplingProfile(SamplingProfile profile) {
+        samplingProfile = profile;
+    }
+
+    @Override
+    public SamplingProfile getSamplingProfile() {
+        return samplingProfile;
+    }
+
+    @Override
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public void close() {
+        stopSensors();
+        for (SysfsAttribute attribute : attributes.values()) {
+            attribute.close();
+        }
+        attributes.clear();
+    }
+
+    private SysfsAttribute attribute(String path) {
+        return attributes.computeIfAbsent(path, p -> new SysfsAttribute(p, truncateOnWrite));
+    }
+
+    private boolean check(SysfsAttribute attribute, boolean ok) {
+        if (!ok) {
+            IOException e = attribute.getLastError();
+            lastError = new IOException(attribute.getPath() + ": " + (e != null ? e.getMessage() : "not available"), e);
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,88 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import me.rapierxbox.shellyelevatev2.hardware.HardwareBackend;
+
+/**
+ * Backlight write path, called on every fade frame.
+ * - Android's automatic brightness is switched to manual once per session, and again only if something else flips it
+ *   back (observed through the settings provider), instead of a binder round-trip per frame
+ * - The value goes to the already open sysfs attribute from a precomputed ASCII table
+ */
+public class BacklightWriter {
+
+    private static final String TAG = "BacklightWriter";
+    // canWrite/putInt are binder calls; without the permission don't retry them on every frame
+    private static final long PERMISSION_RETRY_MS = 10_000L;
+
+    private final Context context;
+    private final HardwareBackend backend;
+    private final ContentObserver modeObserver;
+
+    private volatile boolean manualModeApplied;
+    private long lastManualModeAttemptMs = -PERMISSION_RETRY_MS;
+
+    public BacklightWriter(Context context, HardwareBackend backend) {
+        this.context = context;
+        this.backend = backend;
+
+        modeObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                if (!isManualMode()) {
+                    Log.i(TAG, "Brightness mode changed externally, switching back to manual");
+                    manualModeApplied = false;
+                    applyManualMode(true);
+                }
+            }
+        };
+        context.getContentResolver().registerContentObserver(
+                Settings.System.getUriFor(Settings.System.SCREEN_BRIGHTNESS_MODE), false, modeObserver);
+    }
+
+    /** @return false if the attribute couldn't be written */
+    public boolean write(int brightness) {
+        if (!manualModeApplied) applyManualMode(false);
+        return backend.writeBacklight(Math.max(0, Math.min(brightness, 255)));
+    }
+
+    public int read() {
+        return backend.readBacklight();
+    }
+
+    private synchronized void applyManualMode(boolean force) {
+        if (manualModeApplied) return;
+
+        long now = SystemClock.elapsedRealtime();
+        if (!force && now - lastManualModeAttemptMs < PERMISSION_RETRY_MS) return;
+        lastManualModeAttemptMs = now;
+
+        // Check for WRITE_SETTINGS permission (requested in MainActivity.onCreate)
+        // Note: SELinux denials for sysfs access (avc: denied { write } for name="brightness")
+        // are expected and work in permissive mode on rooted Shelly devices
+        if (!Settings.System.canWrite(context)) {
+            Log.i(TAG, "Please disable androids automatic brightness or give the app the change settings permission.");
+            return;
+        }
+        Settings.System.putInt(context.getContentResolver(), Settings.System.SCREEN_BRIGHTNESS_MODE, Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL);
+        manualModeApplied = true;
+    }
+
+    private boolean isManualMode() {
+        ContentResolver resolver = context.getContentResolver();
+        return Settings.System.getInt(resolver, Settings.System.SCREEN_BRIGHTNESS_MODE, Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL)
+                == Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL;
+    }
+
+    public void onDestroy() {
+        context.getContentResolver().unregisterContentObserver(modeObserver);
+    }
+}
@@ -1,142 +1,233 @@
 package me.rapierxbox.shellyelevatev2.helper;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
+import android.os.Process;
 import android.os.SystemClock;
+import android.util.Log;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.IntConsumer;
 
+import me.rapierxbox.shellyelevatev2.BuildConfig;
+
 /**
- * Thread-safe brightness animator.
- * - Skips redundant updates (from == to)
- * - Coalesces rapid calls
- * - Only updates when value actually changes
+ * Brightness fade engine on its own timer thread, independent of the main thread's Choreographer.
+ * - Steps linearly in a perceptual space (backlight^(1/2.2)), so fades look even at the dark end
+ * - Constant perceptual speed: a full 0-255 fade takes {@link ScreenManager#FADE_DURATION_MS}, small changes less
+ * - Only distinct integer values are written, and a frame is scheduled only when the next one is due (at most every
+ *   {@link #MIN_FRAME_INTERVAL_MS}), so slow fades don't wake the CPU for frames that would write nothing
+ * - A new target mid-fade continues from the current position instead of restarting from the old start value
+ * - {@link #cancel()} returns only once no frame can write anymore
  */
 public class BrightnessAnimator {
 
-	private final ReentrantLock lock = new ReentrantLock();
-	private ValueAnimator animator;
-	private int currentBrightness = -1; // initial unknown value
-	private boolean running = false;
-	private long lastFrameAtMs = 0L;
-	private static final long FRAME_THROTTLE_MS = 50L; // cap writes to ~20fps to reduce sysfs churn
+	private static final String TAG = "BrightnessAnimator";
+	private static final long MIN_FRAME_INTERVAL_MS = 16L;
+	private static final long MIN_FADE_DURATION_MS = 150L;
 	private static final int MIN_ANIMATION_STEP = 2; // skip animating tiny deltas
+	private static final double GAMMA = 2.2;
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(() -> {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+			r.run();
+		}, "BrightnessFade");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// all state guarded by this
+	private ScheduledFuture<?> frameTask;
+	private long frameSeq; // a frame that was already running when it got replaced must not run on
+	private IntConsumer onUpdate;
+	private int currentBrightness = -1; // initial unknown value
+	private int targetBrightness = -1;
+	private double startLevel;
+	private double currentLevel;
+	private double targetLevel;
+	private long segmentStartMs;
+	private long segmentDurationMs;
+
+	// stats
+	private long fadeStartMs;
+	private int fadeSteps;
+	private int fadeRetargets;
+	private long fades;
+	private long totalSteps;
+	private long totalRetargets;
+	private long lastFadeDurationMs;
+	private int lastFadeSteps;
+	private int lastFadeFrom = -1;
+	private int lastFadeTo = -1;
+
+	/** Snapshot of the fade counters. */
+	public static final class Stats {
+		public final boolean running;
+		public final long fades;
+		public final long totalSteps;
+		public final long totalRetargets;
+		public final long lastFadeDurationMs;
+		public final int lastFadeSteps;
+		public final int lastFadeFrom;
+		public final int lastFadeTo;
+
+		Stats(boolean running, long fades, long totalSteps, long totalRetargets, long lastFadeDurationMs,
+			  int lastFadeSteps, int lastFadeFrom, int lastFadeTo) {
+			this.running = running;
+			this.fades = fades;
+			this.totalSteps = totalSteps;
+			this.totalRetargets = totalRetargets;
+			this.lastFadeDurationMs = lastFadeDurationMs;
+			this.lastFadeSteps = lastFadeSteps;
+			this.lastFadeFrom = lastFadeFrom;
+			this.lastFadeTo = lastFadeTo;
+		}
+	}
 
 	/**
 	 * Animate brightness from current value to target.
 	 */
-	public void animateTo(int target, IntConsumer onUpdate) {
-		lock.lock();
-		try {
-			if (target == currentBrightness) return; // skip redundant animation
+	public synchronized void animateTo(int target, IntConsumer onUpdate) {
+		animate(currentBrightness < 0 ? target : currentBrightness, target, onUpdate);
+	}
+
+	/**
+	 * Fade from {@code from} to {@code to}; {@code from} is ignored if a fade is already running.
+	 * {@code onUpdate} is called on the fade thread.
+	 */
+	public synchronized void animate(int from, int to, IntConsumer onUpdate) {
+		long now = SystemClock.uptimeMillis();
+		this.onUpdate = onUpdate;
+
+		if (frameTask != null) {
+			if (to == targetBrightness) return;
+			// retarget: keep going from where we are
+			fadeRetargets++;
+			totalRetargets++;
+		} else {
+			if (from == to) return; // no need to animate
+
+			if (Math.abs(to - from) < MIN_ANIMATION_STEP) {
+				currentBrightness = from;
+				write(to);
+				return;
+			}
 
-			int start = (animator != null && animator.isRunning()) ? currentBrightness : currentBrightness;
-			animate(start, target, onUpdate);
-		} finally {
-			lock.unlock();
+			currentBrightness = from;
+			currentLevel = toLevel(from);
+			fadeStartMs = now;
+			fadeSteps = 0;
+			fadeRetargets = 0;
+			lastFadeFrom = from;
+			fades++;
 		}
+
+		targetBrightness = to;
+		startLevel = currentLevel;
+		targetLevel = toLevel(to);
+		segmentStartMs = now;
+		segmentDurationMs = Math.max(MIN_FADE_DURATION_MS,
+				Math.round(Math.abs(targetLevel - startLevel) * ScreenManager.FADE_DURATION_MS));
+
+		// a retarget replaces the frame scheduled for the old segment
+		stopFrames();
+		scheduleFrame(0);
 	}
 
-	public void animate(int from, int to, IntConsumer onUpdate) {
-		if (from == to) return; // no need to animate
+	private void scheduleFrame(long delayMs) {
+		if (executor.isShutdown()) return;
+		long seq = ++frameSeq;
+		frameTask = executor.schedule(() -> frame(seq), delayMs, TimeUnit.MILLISECONDS);
+	}
 
-		if (Math.abs(to - from) < MIN_ANIMATION_STEP) {
-			currentBrightness = to;
-			onUpdate.accept(to);
-			return;
-		}
+	/** When the fade crosses the rounding boundary to the value after {@link #currentBrightness}. */
+	private long nextValueDueMs() {
+		long segmentEndMs = segmentStartMs + segmentDurationMs;
+		if (targetLevel == startLevel) return segmentEndMs;
 
-		// Cancel previous animation
-		cancel();
+		double boundary = targetLevel > startLevel ? currentBrightness + 0.5 : currentBrightness - 0.5;
+		double fraction = (toLevel(boundary) - startLevel) / (targetLevel - startLevel);
+		if (fraction >= 1.0) return segmentEndMs;
+		return segmentStartMs + (long) Math.ceil(fraction * segmentDurationMs);
+	}
 
-		animator = ValueAnimator.ofInt(from, to);
-		animator.setDuration(Math.max(0, ScreenManager.FADE_DURATION_MS));
-		animator.addUpdateListener(animation -> {
-			int value = (Integer) animation.getAnimatedValue();
-			long now = SystemClock.uptimeMillis();
-			if (now - lastFrameAtMs < FRAME_THROTTLE_MS) return;
-			lock.lock();
-			try {
-				if (value != currentBrightness) {
-					currentBrightness = value;
-					lastFrameAtMs = now;
-					onUpdate.accept(value);
-				}
-			} finally {
-				lock.unlock();
-			}
-		});
-
-		animator.addListener(new AnimatorListenerAdapter() {
-			@Override
-			public void onAnimationStart(Animator animation) {
-				lock.lock();
-				try {
-					running = true;
-				} finally {
-					lock.unlock();
-				}
-			}
+	private synchronized void frame(long seq) {
+		if (frameTask == null || seq != frameSeq) return; // cancelled or replaced while this frame was queued
 
-			@Override
-			public void onAnimationEnd(Animator animation) {
-				lock.lock();
-				try {
-					running = false;
-					animator = null;
-				} finally {
-					lock.unlock();
-				}
-			}
+		long now = SystemClock.uptimeMillis();
+		double t = Math.min(1.0, (double) (now - segmentStartMs) / segmentDurationMs);
+		currentLevel = startLevel + (targetLevel - startLevel) * t;
 
-			@Override
-			public void onAnimationCancel(Animator animation) {
-				lock.lock();
-				try {
-					running = false;
-					animator = null;
-				} finally {
-					lock.unlock();
-				}
-			}
-		});
+		// land exactly on the target, rounding in perceptual space may be off by one
+		write(t >= 1.0 ? targetBrightness : toBrightness(currentLevel));
 
-		animator.start();
+		if (t >= 1.0) {
+			lastFadeDurationMs = now - fadeStartMs;
+			lastFadeSteps = fadeSteps;
+			lastFadeTo = targetBrightness;
+			stopFrames();
+			if (BuildConfig.DEBUG) Log.d(TAG, "Fade to " + lastFadeTo + " done: " + lastFadeSteps + " steps, "
+					+ lastFadeDurationMs + " ms, " + fadeRetargets + " retargets");
+			return;
+		}
+		scheduleFrame(Math.max(MIN_FRAME_INTERVAL_MS, nextValueDueMs() - now));
 	}
 
-	/** Cancel current animation if any */
-	public void cancel() {
-		lock.lock();
+	private void write(int value) {
+		if (value == currentBrightness) return;
+		currentBrightness = value;
+		fadeSteps++;
+		totalSteps++;
 		try {
-			if (animator != null) {
-				animator.cancel();
-				animator = null;
-				running = false;
-			}
-		} finally {
-			lock.unlock();
+			onUpdate.accept(value);
+		} catch (RuntimeException e) {
+			Log.e(TAG, "Brightness update failed", e);
 		}
 	}
 
-	/** Check if animation is currently running */
-	public boolean isRunning() {
-		lock.lock();
-		try {
-			return running;
-		} finally {
-			lock.unlock();
+	private void stopFrames() {
+		if (frameTask != null) {
+			frameTask.cancel(false);
+			frameTask = null;
 		}
 	}
 
+	/** Cancel current animation if any; the brightness stays where the fade was. */
+	public synchronized void cancel() {
+		if (frameTask == null) return;
+		stopFrames();
+		lastFadeDurationMs = SystemClock.uptimeMillis() - fadeStartMs;
+		lastFadeSteps = fadeSteps;
+		lastFadeTo = currentBrightness;
+	}
+
+	/** Check if animation is currently running */
+	public synchronized boolean isRunning() {
+		return frameTask != null;
+	}
+
 	/** Get the current brightness value */
-	public int getCurrentBrightness() {
-		lock.lock();
-		try {
-			return currentBrightness;
-		} finally {
-			lock.unlock();
-		}
+	public synchronized int getCurrentBrightness() {
+		return currentBrightness;
+	}
+
+	public synchronized Stats getStats() {
+		return new Stats(frameTask != null, fades, totalSteps, totalRetargets, lastFadeDurationMs, lastFadeSteps,
+				lastFadeFrom, lastFadeTo);
+	}
+
+	public void shutdown() {
+		cancel();
+		executor.shutdownNow();
+	}
+
+	private static double toLevel(double brightness) {
+		return Math.pow(Math.max(0, Math.min(brightness, 255)) / 255.0, 1.0 / GAMMA);
+	}
+
+	private static int toBrightness(double level) {
+		return (int) Math.round(255.0 * Math.pow(level, GAMMA));
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,145 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lux to backlight mapping, compiled once into a lookup table so an update is a single array read.
+ * <p>
+ * Spec: {@code [shape;]lux:brightness,lux:brightness,...}, e.g. {@code log;0:20,10:40,100:120,1000:255}
+ * - Points are sorted by lux; below the first / above the last point the brightness is held
+ * - Shape {@code linear} (default) interpolates in lux, {@code log} in log(1 + lux) which suits the eye in dim rooms,
+ *   {@code gamma=2.2} interpolates in linear light ((b/255)^gamma) instead of in backlight steps
+ * <p>
+ * The table is indexed by a pseudo-logarithmic lux bucket (octave + 4 bit mantissa, integer ops only): exact up to
+ * 16 lux, ~6% wide buckets above, 0 to 65535 lux in 256 entries.
+ */
+public final class BrightnessCurve {
+
+    private static final int MANTISSA_BITS = 4;
+    private static final int TABLE_SIZE = 16 << MANTISSA_BITS;
+    private static final int MAX_LUX = (1 << 16) - 2;
+
+    private final String spec;
+    private final byte[] table = new byte[TABLE_SIZE];
+
+    private BrightnessCurve(String spec) {
+        this.spec = spec;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public int lookup(float lux) {
+        return table[index(lux)] & 0xFF;
+    }
+
+    /** The built-in ramp: {@code minBrightness} up to 30 lux, linear up to 255 at 500 lux. */
+    public static BrightnessCurve defaultCurve(int minBrightness) {
+        try {
+            return compile("linear;0:" + minBrightness + ",30:" + minBrightness + ",500:255", 0);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param floor minimum output, e.g. the configured min brightness
+     * @throws IllegalArgumentException if the spec can't be parsed
+     */
+    public static BrightnessCurve compile(String spec, int floor) {
+        String body = spec.trim();
+        String shape = "linear";
+        int semicolon = body.indexOf(';');
+        if (semicolon >= 0) {
+            shape = body.substring(0, semicolon).trim().toLowerCase(Locale.ROOT);
+            body = body.substring(semicolon + 1);
+        }
+
+        double gamma = 1.0;
+        boolean log = false;
+        if (shape.equals("log")) {
+            log = true;
+        } else if (shape.startsWith("gamma")) {
+            int eq = shape.indexOf('=');
+            gamma = eq < 0 ? 2.2 : parseDouble(shape.substring(eq + 1), "gamma");
+            if (gamma <= 0) throw new IllegalArgumentException("gamma must be > 0");
+        } else if (!shape.equals("linear")) {
+            throw new IllegalArgumentException("Unknown curve shape: " + shape);
+        }
+
+        List<double[]> points = new ArrayList<>();
+        for (String point : body.split(",")) {
+            if (point.trim().isEmpty()) continue;
+            String[] parts = point.split(":");
+            if (parts.length != 2) throw new IllegalArgumentException("Expected lux:brightness, got " + point.trim());
+            double lux = parseDouble(parts[0], "lux");
+            double brightness = parseDouble(parts[1], "brightness");
+            if (lux < 0 || brightness < 0 || brightness > 255) {
+                throw new IllegalArgumentException("Out of range: " + point.trim());
+            }
+            points.add(new double[]{lux, brightness});
+        }
+        if (points.isEmpty()) throw new IllegalArgumentException("Curve has no points");
+        Collections.sort(points, (a, b) -> Double.compare(a[0], b[0]));
+
+        BrightnessCurve curve = new BrightnessCurve(spec.trim());
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            // sample the middle of the bucket, so the quantisation error goes both ways
+            double lux = i + 1 < TABLE_SIZE ? (luxAt(i) + luxAt(i + 1)) / 2 : luxAt(i);
+            double value = evaluate(points, lux, log, gamma);
+            int b = (int) Math.round(value);
+            curve.table[i] = (byte) Math.max(floor, Math.min(b, 255));
+        }
+        return curve;
+    }
+
+    private static double evaluate(List<double[]> points, double lux, boolean log, double gamma) {
+        double[] first = points.get(0);
+        double[] last = points.get(points.size() - 1);
+        if (lux <= first[0]) return first[1];
+        if (lux >= last[0]) return last[1];
+
+        for (int i = 1; i < points.size(); i++) {
+            double[] hi = points.get(i);
+            if (lux > hi[0]) continue;
+
+            double[] lo = points.get(i - 1);
+            double t = log
+                    ? (Math.log1p(lux) - Math.log1p(lo[0])) / (Math.log1p(hi[0]) - Math.log1p(lo[0]))
+                    : (lux - lo[0]) / (hi[0] - lo[0]);
+            if (gamma == 1.0) return lo[1] + t * (hi[1] - lo[1]);
+
+            double l0 = Math.pow(lo[1] / 255.0, gamma);
+            double l1 = Math.pow(hi[1] / 255.0, gamma);
+            return 255.0 * Math.pow(l0 + t * (l1 - l0), 1.0 / gamma);
+        }
+        return last[1];
+    }
+
+    static int index(float lux) {
+        // NaN and negatives land in bucket 0
+        int v = lux > 0f ? (int) Math.min(lux, MAX_LUX) + 1 : 1;
+        int octave = 31 - Integer.numberOfLeadingZeros(v);
+        int mantissa = octave >= MANTISSA_BITS ? v >> (octave - MANTISSA_BITS) : v << (MANTISSA_BITS - octave);
+        return (octave << MANTISSA_BITS) | (mantissa & ((1 << MANTISSA_BITS) - 1));
+    }
+
+    /** Smallest lux mapping to bucket {@code i}. */
+    static double luxAt(int i) {
+        int octave = i >> MANTISSA_BITS;
+        int mantissa = (1 << MANTISSA_BITS) | (i & ((1 << MANTISSA_BITS) - 1));
+        return Math.scalb((double) mantissa, octave - MANTISSA_BITS) - 1.0;
+    }
+
+    private static double parseDouble(String s, String what) {
+        try {
+            return Double.parseDouble(s.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + what + ": " + s.trim());
+        }
+    }
+}
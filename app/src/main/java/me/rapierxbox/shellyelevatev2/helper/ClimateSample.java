@@ -0,0 +1,23 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+/**
+ * One SHT3x reading: both raw counts and the converted values come from the same sysfs read.
+ * Instances are reused and filled in place by {@link DeviceHelper#readClimate(ClimateSample)}.
+ */
+public class ClimateSample {
+    public static final double INVALID = -999;
+
+    public int rawHumidity;
+    public int rawTemperature;
+    public double temperature = INVALID;
+    public double humidity = INVALID;
+
+    public boolean isValid() {
+        return temperature != INVALID && humidity != INVALID;
+    }
+
+    void invalidate() {
+        temperature = INVALID;
+        humidity = INVALID;
+    }
+}
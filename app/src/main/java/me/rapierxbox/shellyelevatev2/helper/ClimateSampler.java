@@ -0,0 +1,101 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import static me.rapierxbox.shellyelevatev2.Constants.SP_CLIMATE_SAMPLE_INTERVAL;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceHelper;
+
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import me.rapierxbox.shellyelevatev2.BuildConfig;
+
+/**
+ * Reads the SHT3x sensor in the background at a configurable cadence.
+ * Readers (HTTP workers, the JS bridge, MQTT) get the latest snapshot without touching sysfs,
+ * unless they ask for a maximum age that the current snapshot doesn't satisfy.
+ */
+public class ClimateSampler {
+
+    private static final String TAG = "ClimateSampler";
+    public static final int DEFAULT_INTERVAL_SECONDS = 30;
+    private static final int MIN_INTERVAL_SECONDS = 5;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final SharedPreferences prefs;
+    private final ClimateSample sample = new ClimateSample();
+    private volatile ClimateSnapshot latest = ClimateSnapshot.EMPTY;
+    private ScheduledFuture<?> periodicTask;
+    private int intervalSeconds;
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener = (sharedPreferences, key) -> {
+        if (SP_CLIMATE_SAMPLE_INTERVAL.equals(key)) {
+            schedule(readInterval(sharedPreferences));
+        }
+    };
+
+    public ClimateSampler(SharedPreferences prefs) {
+        this.prefs = prefs;
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        schedule(readInterval(prefs));
+    }
+
+    private static int readInterval(SharedPreferences prefs) {
+        return Math.max(MIN_INTERVAL_SECONDS, prefs.getInt(SP_CLIMATE_SAMPLE_INTERVAL, DEFAULT_INTERVAL_SECONDS));
+    }
+
+    private synchronized void schedule(int seconds) {
+        if (scheduler.isShutdown() || (periodicTask != null && seconds == intervalSeconds)) return;
+        if (periodicTask != null) periodicTask.cancel(false);
+
+        intervalSeconds = seconds;
+        periodicTask = scheduler.scheduleWithFixedDelay(this::sampleNow, 0, seconds, TimeUnit.SECONDS);
+        Log.i(TAG, "Sampling climate every " + seconds + "s");
+    }
+
+    public int getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    /** Latest snapshot, never blocks. */
+    public ClimateSnapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * Latest snapshot, re-reading the sensor on the calling thread if it is older than {@code maxAgeMs}.
+     */
+    public ClimateSnapshot getLatest(long maxAgeMs) {
+        ClimateSnapshot snapshot = latest;
+        if (snapshot.getAgeMs() <= maxAgeMs) return snapshot;
+        return refresh(maxAgeMs);
+    }
+
+    private void sampleNow() {
+        refresh(0L);
+    }
+
+    private synchronized ClimateSnapshot refresh(long maxAgeMs) {
+        // Another caller may have refreshed while we were waiting for the lock
+        ClimateSnapshot snapshot = latest;
+        if (maxAgeMs > 0L && snapshot.getAgeMs() <= maxAgeMs) return snapshot;
+
+        if (mDeviceHelper == null || !mDeviceHelper.readClimate(sample)) {
+            if (BuildConfig.DEBUG) Log.d(TAG, "Climate read failed, keeping previous snapshot");
+            return snapshot;
+        }
+
+        snapshot = new ClimateSnapshot(sample.temperature, sample.humidity, SystemClock.elapsedRealtime());
+        latest = snapshot;
+        return snapshot;
+    }
+
+    public void onDestroy() {
+        prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import android.os.SystemClock;
+
+/**
+ * Immutable, timestamped temperature/humidity reading shared by HTTP, JS and MQTT.
+ */
+public final class ClimateSnapshot {
+    public static final ClimateSnapshot EMPTY = new ClimateSnapshot(ClimateSample.INVALID, ClimateSample.INVALID, 0L);
+
+    public final double temperature;
+    public final double humidity;
+    /** {@link SystemClock#elapsedRealtime()} at the time of the sysfs read, 0 if never sampled. */
+    public final long sampledAtMs;
+
+    ClimateSnapshot(double temperature, double humidity, long sampledAtMs) {
+        this.temperature = temperature;
+        this.humidity = humidity;
+        this.sampledAtMs = sampledAtMs;
+    }
+
+    public boolean isValid() {
+        return temperature != ClimateSample.INVALID && humidity != ClimateSample.INVALID;
+    }
+
+    public long getAgeMs() {
+        if (sampledAtMs == 0L) return Long.MAX_VALUE;
+        return SystemClock.elapsedRealtime() - sampledAtMs;
+    }
+}
@@ -1,56 +1,54 @@
 package me.rapierxbox.shellyelevatev2.helper;
 
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mApplicationContext;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mMQTTServer;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mShellyElevateJavascriptInterface;
 
-import android.provider.Settings;
 import android.util.Log;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Objects;
+import java.util.List;
 
-import me.rapierxbox.shellyelevatev2.BuildConfig;
 import me.rapierxbox.shellyelevatev2.DeviceModel;
+import me.rapierxbox.shellyelevatev2.hardware.HardwareBackend;
 
 public class DeviceHelper {
 
-    private static final String[][] possibleRelayFiles = {
-            {
-                    "/sys/devices/platform/leds/green_enable",
-                    "/sys/class/strelay/relay1"
-            },
-            {
-                    "/sys/devices/platform/leds/red_enable",
-                    "/sys/class/strelay/relay2"
-            }
-    };
-
-    private static final String tempAndHumFile = "/sys/devices/platform/sht3x-user/sht3x_access";
-    private static final String[] screenBrightnessFiles = {
-            "/sys/devices/platform/leds-mt65xx/leds/lcd-backlight/brightness",
-            "/sys/devices/platform/sprd_backlight/backlight/sprd_backlight/brightness",
-            "/sys/devices/platform/backlight/backlight/backlight/brightness"
-    };
-    private String screenBrightnessFile;
-    private boolean screenOn = true;
-    private int lastScreenBrightness;
+    private final HardwareBackend backend;
+    private final BacklightWriter backlightWriter;
+
+    private final DeviceModel device = DeviceModel.getReportedDevice();
+
+    // scratch space for climate reads; the backend read is serialized anyway
+    private final int[] climateRaw = new int[2];
+    private final ClimateSample climateSample = new ClimateSample();
+
+    // Relay write-through cache, one bit per relay; kept in sync with outside changes by RelayStateTracker
+    private final Object relayLock = new Object();
+    private volatile int relayStates;
+
+    private volatile boolean screenOn = true;
+    private int lastScreenBrightness; // guarded by this
 
     private static final String TAG = "DeviceHelper";
 
-    public DeviceHelper() {
-        for (String brightnessFile : screenBrightnessFiles) {
-            if (new File(brightnessFile).exists()) {
-                screenBrightnessFile = brightnessFile;
-            }
-        }
-        if (screenBrightnessFile == null) {
+    public DeviceHelper(HardwareBackend backend) {
+        this.backend = backend;
+        backlightWriter = new BacklightWriter(mApplicationContext, backend);
+        Log.i(TAG, "Hardware backend: " + backend.getName());
+        if (!backend.hasBacklight()) {
             Log.wtf(TAG, "No brightness file found");
-            screenBrightnessFile = "";
         }
+
+        for (int num = 0; num < backend.getRelayCount(); num++) {
+            if (backend.readRelay(num)) relayStates |= 1 << num;
+        }
+    }
+
+    public HardwareBackend getBackend() {
+        return backend;
     }
 
     public void setScreenOn(boolean on) {
@@ -64,7 +62,8 @@ public class DeviceHelper {
         return screenOn;
     }
 
-    public void setScreenBrightness(int brightness) {
+    /** Called from the main thread, the fade thread and the wake fast path. */
+    public synchronized void setScreenBrightness(int brightness) {
         // Skip redundant writes to avoid duplicate logs and I/O
         if (lastScreenBrightness == brightness) return;
 
@@ -73,53 +72,44 @@ public class DeviceHelper {
     }
 
     private void setScreenBrightnessInternal(int brightness){
-        mMQTTServer.publishScreenBrightness(brightness);
+        if (mMQTTServer != null) mMQTTServer.reportScreenBrightness(brightness);
 
         writeScreenBrightness(brightness);
     }
 
     private void writeScreenBrightness(int brightness) {
-        brightness = Math.max(0, Math.min(brightness, 255));
-        if (BuildConfig.DEBUG) Log.d(TAG, "Set brightness to: " + brightness);
-
-        // Check for WRITE_SETTINGS permission (requested in MainActivity.onCreate)
-        // Note: SELinux denials for sysfs access (avc: denied { write } for name="brightness")
-        // are expected and work in permissive mode on rooted Shelly devices
-        if (!Settings.System.canWrite(mApplicationContext)) {
-            Log.i(TAG, "Please disable androids automatic brightness or give the app the change settings permission.");
-        } else {
-            Settings.System.putInt(mApplicationContext.getContentResolver(), Settings.System.SCREEN_BRIGHTNESS_MODE, Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL);
-        }
-
-        writeFileContent(screenBrightnessFile, String.valueOf(brightness));
+        // runs on every fade frame: no logging, no settings provider calls
+        if (!backlightWriter.write(brightness)) logError("writing backlight");
     }
 
     public int getScreenBrightness() {
-        return Integer.parseInt(sanitizeString(readFileContent(screenBrightnessFile)));
+        return backlightWriter.read();
     }
 
-    public boolean getRelay(int num) {
-        boolean relayState = false;
+    public int getRelayCount() {
+        return backend.getRelayCount();
+    }
 
+    /** Cached relay state; no sysfs access. */
+    public boolean getRelay(int num) {
         // Safety check
-        if (num < 0 || num >= possibleRelayFiles.length) return false;
+        if (num < 0 || num >= backend.getRelayCount()) return false;
 
-        for (String relayFile : possibleRelayFiles[num]) {
-            String content = readFileContent(relayFile);
-            if (content != null) {
-                relayState |= content.contains("1");
-            }
-        }
+        return (relayStates & (1 << num)) != 0;
+    }
 
-        return relayState;
+    /** Relay attribute paths that exist on this device, for change observation. */
+    public List<String> getRelayFiles(int num) {
+        return backend.getRelayFiles(num);
     }
 
     public void setRelay(int num, boolean state) {
         // Safety check
-        if (num < 0 || num >= possibleRelayFiles.length) return;
+        if (num < 0 || num >= backend.getRelayCount()) return;
 
-        for (String relayFile : possibleRelayFiles[num]) {
-            writeFileContent(relayFile, state ? "1" : "0");
+        synchronized (relayLock) {
+            if (!backend.writeRelay(num, state)) logError("writing relay " + num);
+            if (updateRelayState(num, state)) notifyRelayChanged(num, state);
         }
 
         if (mMQTTServer.shouldSend()) {
@@ -127,40 +117,88 @@ public class DeviceHelper {
         }
     }
 
-    public double getTemperature() {
-        try
-        {
-            var content = readFileContent(tempAndHumFile);
-            if (content == null || content.isEmpty()) return -999;
+    /**
+     * Read the relay state from the hardware and reconcile the cache with it (e.g. the stock firmware or a physical
+     * override flipped the relay). Publishes only when the state really changed.
+     * <p>
+     * Read and update happen under the same lock as {@link #setRelay}, so a read racing a write can't put the old
+     * state back into the cache.
+     */
+    public void verifyRelay(int num) {
+        if (num < 0 || num >= backend.getRelayCount()) return;
+
+        boolean state;
+        synchronized (relayLock) {
+            state = backend.readRelay(num);
+            if (!updateRelayState(num, state)) return;
+        }
+        Log.i(TAG, "Relay " + num + " changed externally to " + state);
 
-            String[] tempSplit = content.split(":");
-            double temp = (Double.parseDouble(tempSplit[1]) * 175.0 / 65535.0) - 45.0;
+        notifyRelayChanged(num, state);
+        if (mMQTTServer != null && mMQTTServer.shouldSend()) {
+            mMQTTServer.publishRelay(num, state);
+        }
+    }
 
-            temp += DeviceModel.getReportedDevice().temperatureOffset;
-            return Math.round(temp * 10.0) / 10.0;
-        } catch (Exception e) {
-            Log.d("TAG", "Error while reading temperature: " + e);
-            return -999;
+    private boolean updateRelayState(int num, boolean state) {
+        int mask = 1 << num;
+        int previous = relayStates;
+        int updated = state ? (previous | mask) : (previous & ~mask);
+        relayStates = updated;
+        return updated != previous;
+    }
+
+    private void notifyRelayChanged(int num, boolean state) {
+        mEventBus.postRelay(num, state);
+
+        if (mShellyElevateJavascriptInterface != null) {
+            mShellyElevateJavascriptInterface.onRelayChanged(num, state);
         }
     }
 
-    public double getHumidity() {
-        try {
-            var content = readFileContent(tempAndHumFile);
-            if (content == null || content.isEmpty()) return -999;
+    /**
+     * Read the SHT3x sensor once and fill {@code out} with both raw counts and the converted values.
+     * Parses straight from the sysfs bytes, so it doesn't allocate.
+     */
+    public boolean readClimate(ClimateSample out) {
+        int rawHumidity;
+        int rawTemperature;
+        synchronized (climateRaw) {
+            if (!backend.readClimate(climateRaw)) {
+                out.invalidate();
+                return false;
+            }
+            rawHumidity = climateRaw[0];
+            rawTemperature = climateRaw[1];
+        }
 
-            String[] humiditySplit = content.split(":");
-            double humidity = Double.parseDouble(humiditySplit[0]) * 100.0 / 65535.0;
+        out.rawHumidity = rawHumidity;
+        out.rawTemperature = rawTemperature;
 
-            humidity += DeviceModel.getReportedDevice().humidityOffset;
+        double temp = (rawTemperature * 175.0 / 65535.0) - 45.0 + device.temperatureOffset;
+        out.temperature = Math.round(temp * 10.0) / 10.0;
 
-            return Math.round(humidity);
-        } catch (Exception e) {
-            Log.d("TAG", "Error while reading humidity: " + e);
-            return -999;
+        double humidity = rawHumidity * 100.0 / 65535.0 + device.humidityOffset;
+        out.humidity = Math.round(humidity);
+        return true;
+    }
+
+    public double getTemperature() {
+        synchronized (climateSample) {
+            return readClimate(climateSample) ? climateSample.temperature : ClimateSample.INVALID;
         }
     }
 
+    public double getHumidity() {
+        synchronized (climateSample) {
+            return readClimate(climateSample) ? climateSample.humidity : ClimateSample.INVALID;
+        }
+    }
+
+    public void onDestroy() {
+        backlightWriter.onDestroy();
+    }
+
     public static boolean fileExists(String filePath) {
         try {
             File file = new File(filePath);
@@ -170,32 +208,8 @@ public class DeviceHelper {
         }
     }
 
-    private static String readFileContent(String filePath) {
-        if (!fileExists(filePath))
-            return null;
-
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                content.append(line).append("\n");
-            }
-        } catch (IOException e) {
-            Log.e(TAG, "Error when reading file with path:" + filePath + ":" + Objects.requireNonNull(e.getMessage()));
-        }
-        return content.toString();
-    }
-
-    private static String sanitizeString(String input) {
-        if (input == null) return "";
-        return input.replaceAll("[^0-9]", ""); // keep only digits
-    }
-
-    private static void writeFileContent(String filePath, String content) {
-        try (FileWriter writer = new FileWriter(filePath)) {
-            writer.write(content);
-        } catch (IOException e) {
-            Log.e(TAG, "Error when writing file with path:" + filePath + ":" + Objects.requireNonNull(e.getMessage()));
-        }
+    private void logError(String operation) {
+        IOException e = backend.getLastError();
+        Log.e(TAG, "Error when " + operation + ": " + (e != null ? e.getMessage() : "not available"));
     }
 }
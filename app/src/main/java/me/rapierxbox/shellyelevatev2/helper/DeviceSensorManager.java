@@ -1,42 +1,42 @@
 package me.rapierxbox.shellyelevatev2.helper;
 
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_LIGHT_KEY;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_LIGHT_UPDATED;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_PROXIMITY_KEY;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_PROXIMITY_UPDATED;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_AUTOMATIC_BRIGHTNESS;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_MIN_BRIGHTNESS;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_WAKE_ON_PROXIMITY;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mMQTTServer;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenSaverManager;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mSharedPreferences;
 
 import android.content.Context;
-import android.content.Intent;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.os.SystemClock;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-
 import java.util.Arrays;
 import java.util.List;
 
-import me.rapierxbox.shellyelevatev2.DeviceModel;
+import me.rapierxbox.shellyelevatev2.BuildConfig;
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication;
-
-
-public class DeviceSensorManager implements SensorEventListener {
+import me.rapierxbox.shellyelevatev2.events.EventBus;
+import me.rapierxbox.shellyelevatev2.hardware.HardwareBackend;
+import me.rapierxbox.shellyelevatev2.hardware.SamplingProfile;
+
+
+/**
+ * Filters light/proximity readings and fans them out over the event bus.
+ * Every light sample goes on the bus with its sensor timestamp, unthrottled: the lux filter in ScreenManager needs all
+ * of them, including the ones of a batch that arrive together, and only hands changes of the target onwards.
+ * Callbacks arrive on the backend's sensor thread; the threshold math and MQTT publishing stay there,
+ * listeners decide themselves whether their result needs the main thread.
+ * The light sensor is slowed down and batched ({@link SamplingProfile#ASLEEP}) while the screen is off or the
+ * screensaver runs.
+ */
+public class DeviceSensorManager implements HardwareBackend.SensorListener, EventBus.ScreenListener, EventBus.ScreenSaverListener {
     private static final String TAG = "DeviceSensorManager";
-    private float lastMeasuredLux = 0.0f;
+    private volatile float lastMeasuredLux = 0.0f;
     private float lastPublishedLux = -1f; // initialize to invalid value
-    private long lastLuxBroadcastAtMs = 0L;
-    private static final long MIN_LUX_EVENT_INTERVAL_MS = 1000L; // reduced spam
     private static final float LUX_RELATIVE_THRESHOLD = 0.15f; // increased threshold to reduce broadcasts
 
     private float lastPublishedProximity = -1f;
@@ -45,107 +45,106 @@ public class DeviceSensorManager implements SensorEventListener {
     private static final float PROX_ABS_THRESHOLD = 0.2f; // increased threshold
 
     private final Context context;
+    private final HardwareBackend backend;
+    private volatile boolean screenOn = true;
+    private volatile boolean screenSaverRunning = false;
 
-    public DeviceSensorManager(Context ctx) {
+    public DeviceSensorManager(Context ctx, HardwareBackend hardwareBackend) {
         context = ctx;
+        backend = hardwareBackend;
 
-        DeviceModel device = DeviceModel.getReportedDevice();
-        SensorManager sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-
-        List<Sensor> deviceSensors = sensorManager.getSensorList(Sensor.TYPE_ALL);
-        for (Sensor sensor : deviceSensors) {
-            Log.d(TAG, sensor.getName());
+        if (backend.hasProximitySensor()) {
+            maxProximitySensorValue = backend.getMaxProximityRange();
         }
+        backend.startSensors(this);
 
-        // light sensor
-        Sensor lightSensor = sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
-        sensorManager.registerListener(this, lightSensor, SensorManager.SENSOR_DELAY_NORMAL);
-
-        // proximity sensor
-        Log.d(TAG, "Has proximity sensor: " + device.hasProximitySensor);
-        if (device.hasProximitySensor) {
-            Sensor proximitySensor = sensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY);
-            if (proximitySensor != null) {
-                maxProximitySensorValue = proximitySensor.getMaximumRange();
-                Log.d(TAG, "Default proximity sensor: " + proximitySensor + " - Max: " + maxProximitySensorValue);
-                sensorManager.registerListener(this, proximitySensor, SensorManager.SENSOR_DELAY_NORMAL);
-            }
-        }
+        // only flips a flag and re-registers one sensor, no need to hop threads
+        mEventBus.screen.register(this, EventBus.Delivery.INLINE);
+        mEventBus.screenSaver.register(this, EventBus.Delivery.INLINE);
+    }
+
+    public SamplingProfile getSamplingProfile() {
+        return backend.getSamplingProfile();
+    }
+
+    @Override
+    public void onScreenChanged(boolean on) {
+        screenOn = on;
+        updateSamplingProfile();
+    }
+
+    @Override
+    public void onScreenSaverChanged(boolean running) {
+        screenSaverRunning = running;
+        updateSamplingProfile();
+    }
+
+    private synchronized void updateSamplingProfile() {
+        SamplingProfile profile = screenOn && !screenSaverRunning ? SamplingProfile.AWAKE : SamplingProfile.ASLEEP;
+        if (profile == backend.getSamplingProfile()) return;
+
+        if (BuildConfig.DEBUG) Log.d(TAG, "Sampling profile: " + profile);
+        backend.setSamplingProfile(profile);
     }
 
     public float getLastMeasuredLux() {
         return lastMeasuredLux;
     }
 
-    private float lastMeasuredDistance = 0.0f;
+    private volatile float lastMeasuredDistance = 0.0f;
     public float getLastMeasuredDistance() { return lastMeasuredDistance; }
 
-    private float maxProximitySensorValue = 1.0f;
+    private volatile float maxProximitySensorValue = 1.0f;
     public float getMaxProximitySensorValue() { return maxProximitySensorValue;}
 
     @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event == null) return;
-        Intent intent;
-
-        //Log.d(TAG, "Got an event from a sensor: " + event.sensor.getType() + " - " + Arrays.toString(event.values));
-
-        switch (event.sensor.getType()) {
-            case Sensor.TYPE_LIGHT:
-                lastMeasuredLux = event.values[0];
-                boolean shouldPublish = false;
-
-                if (lastPublishedLux < 0) {
-                    // First reading
-                    shouldPublish = true;
-                } else {
-                    float diff = Math.abs(lastMeasuredLux - lastPublishedLux);
-                    float change = diff / Math.max(1f, lastPublishedLux);
-                    if (change >= LUX_RELATIVE_THRESHOLD) {
-                        shouldPublish = true;
-                    }
-                }
-
-                long now = SystemClock.elapsedRealtime();
-                boolean intervalOk = now - lastLuxBroadcastAtMs >= MIN_LUX_EVENT_INTERVAL_MS;
-
-                if (shouldPublish && mMQTTServer != null && mMQTTServer.shouldSend()) {
-                    mMQTTServer.publishLux(lastMeasuredLux);
-                    lastPublishedLux = lastMeasuredLux;
-                }
-
-                if (intervalOk) {
-                    intent = new Intent(INTENT_LIGHT_UPDATED);
-                    intent.putExtra(INTENT_LIGHT_KEY, lastMeasuredLux);
-                    LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
-                    lastLuxBroadcastAtMs = now;
-                }
-                break;
-
-            case Sensor.TYPE_PROXIMITY:
-                lastMeasuredDistance = event.values[0];
-                boolean first = lastPublishedProximity < 0f;
-                float delta = Math.abs(lastMeasuredDistance - (first ? lastMeasuredDistance : lastPublishedProximity));
-                long nowProx = SystemClock.elapsedRealtime();
-                boolean intervalOkProx = nowProx - lastProximityBroadcastAtMs >= MIN_PROX_EVENT_INTERVAL_MS;
-
-                if (first || (delta >= PROX_ABS_THRESHOLD && intervalOkProx)) {
-                    intent = new Intent(INTENT_PROXIMITY_UPDATED);
-                    intent.putExtra(INTENT_PROXIMITY_KEY, lastMeasuredDistance);
-                    LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
-                    lastProximityBroadcastAtMs = nowProx;
-                    lastPublishedProximity = lastMeasuredDistance;
-                }
-                break;
+    public void onLight(float lux, long timestampNanos) {
+        lastMeasuredLux = lux;
+        boolean shouldPublish = false;
+
+        if (lastPublishedLux < 0) {
+            // First reading
+            shouldPublish = true;
+        } else {
+            float diff = Math.abs(lastMeasuredLux - lastPublishedLux);
+            float change = diff / Math.max(1f, lastPublishedLux);
+            if (change >= LUX_RELATIVE_THRESHOLD) {
+                shouldPublish = true;
+            }
+        }
+
+        if (shouldPublish && mMQTTServer != null && mMQTTServer.shouldSend()) {
+            mMQTTServer.publishLux(lastMeasuredLux);
+            lastPublishedLux = lastMeasuredLux;
+        }
+
+        mEventBus.postLux(lastMeasuredLux, timestampNanos);
+    }
+
+    @Override
+    public void onProximity(float distance) {
+        lastMeasuredDistance = distance;
+        boolean first = lastPublishedProximity < 0f;
+        float delta = Math.abs(lastMeasuredDistance - (first ? lastMeasuredDistance : lastPublishedProximity));
+        long nowProx = SystemClock.elapsedRealtime();
+        boolean intervalOkProx = nowProx - lastProximityBroadcastAtMs >= MIN_PROX_EVENT_INTERVAL_MS;
+
+        if (first || (delta >= PROX_ABS_THRESHOLD && intervalOkProx)) {
+            mEventBus.postProximity(lastMeasuredDistance);
+            lastProximityBroadcastAtMs = nowProx;
+            lastPublishedProximity = lastMeasuredDistance;
         }
     }
 
     @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Ignore
+    public void onKey(int keyCode, boolean down) {
+        // Simulated keys go through the same path as the real ones in MainActivity
+        mEventBus.postKey(keyCode, down);
     }
 
     public void onDestroy() {
-        ((SensorManager) context.getSystemService(Context.SENSOR_SERVICE)).unregisterListener(this);
+        mEventBus.screen.unregister(this);
+        mEventBus.screenSaver.unregister(this);
+        backend.stopSensors();
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket latency histogram: recording is a few atomic adds, no lock and no allocation, so it can sit on the
+ * input path. Bucket {@code i} counts samples up to {@code 2^i} ms, the last one everything above.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 14; // ..1, ..2, ..4, ... ..4096 ms, > 4096 ms
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMs = new AtomicLong();
+    private final AtomicLong maxMs = new AtomicLong();
+    private volatile long lastMs = -1;
+    private volatile String lastSource = "";
+
+    public void record(long ms, String source) {
+        ms = Math.max(0L, ms);
+        buckets.incrementAndGet(bucket(ms));
+        count.incrementAndGet();
+        sumMs.addAndGet(ms);
+        maxMs.accumulateAndGet(ms, Math::max);
+        lastMs = ms;
+        lastSource = source;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getLastMs() {
+        return lastMs;
+    }
+
+    /** Upper bound of the bucket holding the {@code p} quantile, -1 without samples. */
+    public long percentileMs(double p) {
+        long total = count.get();
+        if (total == 0) return -1;
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return 1L << i;
+        }
+        return maxMs.get();
+    }
+
+    public JSONObject toJson() throws JSONException {
+        long total = count.get();
+        JSONObject json = new JSONObject();
+        json.put("count", total);
+        json.put("last_ms", lastMs);
+        json.put("last_source", lastSource);
+        json.put("mean_ms", total == 0 ? -1 : sumMs.get() / total);
+        json.put("p50_ms", percentileMs(0.50));
+        json.put("p95_ms", percentileMs(0.95));
+        json.put("max_ms", total == 0 ? -1 : maxMs.get());
+
+        JSONArray histogram = new JSONArray();
+        for (int i = 0; i < BUCKETS; i++) {
+            JSONObject bucket = new JSONObject();
+            bucket.put("le_ms", i < BUCKETS - 1 ? String.valueOf(1L << i) : "+Inf");
+            bucket.put("count", buckets.get(i));
+            histogram.put(bucket);
+        }
+        json.put("buckets", histogram);
+        return json;
+    }
+
+    private static int bucket(long ms) {
+        if (ms <= 1) return 0;
+        // ceil(log2(ms))
+        int i = 64 - Long.numberOfLeadingZeros(ms - 1);
+        return Math.min(i, BUCKETS - 1);
+    }
+}
@@ -0,0 +1,109 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import java.util.Arrays;
+
+/**
+ * Smooths raw lux readings before they reach the brightness computation, so flicker (TVs, passing clouds) is dropped
+ * before it restarts the hysteresis timer.
+ * - Time based filters use the gap between the sensor timestamps of the samples, so they behave the same with the
+ *   fast and the batched sensor profile (a batch arrives at once, its samples are still seconds apart)
+ * - Not thread-safe: fed from the sensor thread only; swap the instance to change parameters
+ */
+public interface LuxFilter {
+
+    String NONE = "none";
+    String EMA = "ema";
+    String MEDIAN = "median";
+    String ATTACK_DECAY = "attackDecay";
+
+    String DEFAULT_TYPE = ATTACK_DECAY;
+    int DEFAULT_TIME_CONSTANT_MS = 3000;
+    int DEFAULT_WINDOW = 5;
+    int DEFAULT_ATTACK_MS = 1500;
+    int DEFAULT_DECAY_MS = 6000;
+
+    /**
+     * @param lux         raw reading, already sanitized (finite, >= 0)
+     * @param timestampMs monotonic time the sensor took the reading (not its arrival)
+     * @return the filtered value
+     */
+    float apply(float lux, long timestampMs);
+
+    /**
+     * @param type one of {@link #NONE}, {@link #EMA}, {@link #MEDIAN}, {@link #ATTACK_DECAY}; unknown types fall back
+     *             to {@link #NONE}
+     */
+    static LuxFilter create(String type, int timeConstantMs, int window, int attackMs, int decayMs) {
+        switch (type == null ? NONE : type) {
+            case EMA:
+                return new Ema(timeConstantMs, timeConstantMs);
+            case MEDIAN:
+                return new Median(window);
+            case ATTACK_DECAY:
+                return new Ema(attackMs, decayMs);
+            default:
+                return new None();
+        }
+    }
+
+    final class None implements LuxFilter {
+        @Override
+        public float apply(float lux, long timestampMs) {
+            return lux;
+        }
+    }
+
+    /**
+     * Exponential moving average with separate time constants for rising (attack) and falling (decay) light.
+     * With equal constants it's a plain EMA; a short attack and a long decay brighten promptly but ignore brief shadows.
+     */
+    final class Ema implements LuxFilter {
+        private final float attackMs;
+        private final float decayMs;
+        private float value = Float.NaN;
+        private long lastTimestampMs;
+
+        Ema(int attackMs, int decayMs) {
+            this.attackMs = Math.max(0, attackMs);
+            this.decayMs = Math.max(0, decayMs);
+        }
+
+        @Override
+        public float apply(float lux, long timestampMs) {
+            if (Float.isNaN(value)) {
+                value = lux;
+            } else {
+                float tau = lux > value ? attackMs : decayMs;
+                long dt = Math.max(0L, timestampMs - lastTimestampMs);
+                float alpha = tau <= 0f ? 1f : (float) (1.0 - Math.exp(-dt / tau));
+                value += alpha * (lux - value);
+            }
+            lastTimestampMs = timestampMs;
+            return value;
+        }
+    }
+
+    /** Median of the last {@code window} readings: drops single-sample spikes without lagging real steps much. */
+    final class Median implements LuxFilter {
+        private final float[] samples;
+        private final float[] sorted;
+        private int count;
+        private int next;
+
+        Median(int window) {
+            samples = new float[Math.max(1, window)];
+            sorted = new float[samples.length];
+        }
+
+        @Override
+        public float apply(float lux, long timestampMs) {
+            samples[next] = lux;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) count++;
+
+            System.arraycopy(samples, 0, sorted, 0, count);
+            Arrays.sort(sorted, 0, count);
+            return (count & 1) == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) / 2f;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import static me.rapierxbox.shellyelevatev2.Constants.SP_RELAY_POLL_INTERVAL;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceHelper;
+
+import android.content.SharedPreferences;
+import android.os.FileObserver;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import me.rapierxbox.shellyelevatev2.BuildConfig;
+
+/**
+ * Keeps the DeviceHelper relay cache in sync with changes made outside the app (stock firmware, physical override).
+ * - FileObservers on the relay attributes react immediately where the kernel emits inotify events
+ * - sysfs usually doesn't notify on writes, so a low-rate poll verifies the cache as a safety net
+ */
+public class RelayStateTracker {
+
+    private static final String TAG = "RelayStateTracker";
+    public static final int DEFAULT_POLL_INTERVAL_SECONDS = 10;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    // FileObservers stop firing once garbage collected, keep strong references
+    private final List<FileObserver> observers = new ArrayList<>();
+    private final SharedPreferences prefs;
+    private ScheduledFuture<?> pollTask;
+    private int pollIntervalSeconds = -1;
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener = (sharedPreferences, key) -> {
+        if (SP_RELAY_POLL_INTERVAL.equals(key)) {
+            schedulePoll(readInterval(sharedPreferences));
+        }
+    };
+
+    public RelayStateTracker(SharedPreferences prefs) {
+        this.prefs = prefs;
+
+        for (int num = 0; num < mDeviceHelper.getRelayCount(); num++) {
+            final int relay = num;
+            for (String path : mDeviceHelper.getRelayFiles(num)) {
+                FileObserver observer = new FileObserver(path, FileObserver.MODIFY | FileObserver.CLOSE_WRITE) {
+                    @Override
+                    public void onEvent(int event, String p) {
+                        if (BuildConfig.DEBUG) Log.d(TAG, "Relay " + relay + " attribute event " + event);
+                        verifyAsync(relay);
+                    }
+                };
+                observer.startWatching();
+                observers.add(observer);
+            }
+        }
+        Log.i(TAG, "Observing " + observers.size() + " relay attribute(s)");
+
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        schedulePoll(readInterval(prefs));
+    }
+
+    private static int readInterval(SharedPreferences prefs) {
+        return Math.max(0, prefs.getInt(SP_RELAY_POLL_INTERVAL, DEFAULT_POLL_INTERVAL_SECONDS));
+    }
+
+    private synchronized void schedulePoll(int seconds) {
+        if (scheduler.isShutdown() || seconds == pollIntervalSeconds) return;
+        if (pollTask != null) pollTask.cancel(false);
+        pollTask = null;
+
+        pollIntervalSeconds = seconds;
+        if (seconds == 0) {
+            Log.i(TAG, "Relay polling disabled");
+            return;
+        }
+        pollTask = scheduler.scheduleWithFixedDelay(this::verifyAll, seconds, seconds, TimeUnit.SECONDS);
+        Log.i(TAG, "Verifying relay states every " + seconds + "s");
+    }
+
+    private void verifyAsync(int num) {
+        if (scheduler.isShutdown()) return;
+        scheduler.execute(() -> verify(num));
+    }
+
+    private void verifyAll() {
+        for (int num = 0; num < mDeviceHelper.getRelayCount(); num++) {
+            verify(num);
+        }
+    }
+
+    private void verify(int num) {
+        try {
+            mDeviceHelper.verifyRelay(num);
+        } catch (Exception e) {
+            Log.e(TAG, "Error verifying relay " + num, e);
+        }
+    }
+
+    public void onDestroy() {
+        prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
+        for (FileObserver observer : observers) {
+            observer.stopWatching();
+        }
+        observers.clear();
+        scheduler.shutdownNow();
+    }
+}
@@ -1,39 +1,44 @@
 package me.rapierxbox.shellyelevatev2.helper;
 
 import static android.content.Context.MODE_PRIVATE;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_LIGHT_KEY;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_LIGHT_UPDATED;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_SCREEN_SAVER_STARTED;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_SCREEN_SAVER_STOPPED;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_TURN_SCREEN_OFF;
-import static me.rapierxbox.shellyelevatev2.Constants.INTENT_TURN_SCREEN_ON;
 import static me.rapierxbox.shellyelevatev2.Constants.SHARED_PREFERENCES_NAME;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_AUTOMATIC_BRIGHTNESS;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_BRIGHTNESS;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_BRIGHTNESS_CURVE;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_LUX_FILTER;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_LUX_FILTER_ATTACK;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_LUX_FILTER_DECAY;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_LUX_FILTER_TIME_CONSTANT;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_LUX_FILTER_WINDOW;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_MIN_BRIGHTNESS;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_BRIGHTNESS_CURVE;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_MIN_BRIGHTNESS;
 import static me.rapierxbox.shellyelevatev2.Constants.SP_TOUCH_TO_WAKE;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceHelper;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mMQTTServer;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenSaverManager;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.MainThread;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import org.json.JSONException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import me.rapierxbox.shellyelevatev2.BuildConfig;
+import me.rapierxbox.shellyelevatev2.events.EventBus;
 
-public class ScreenManager extends BroadcastReceiver {
+public class ScreenManager implements EventBus.LuxListener, EventBus.ScreenListener, EventBus.ScreenSaverListener {
 
     private static final String TAG = "ScreenManager";
     private static final long HYSTERESIS_DELAY_MS = 3000L; // 3 seconds
@@ -43,8 +48,12 @@ public class ScreenManager extends BroadcastReceiver {
     public static final int MIN_BRIGHTNESS_DEFAULT = 48;
     public static final int DEFAULT_BRIGHTNESS = 255;
 
-    // sensor
-    private float lastMeasuredLux = 0.0f;
+    public static final String WAKE_SOURCE_TOUCH = "touch";
+    public static final String WAKE_SOURCE_PROXIMITY = "proximity";
+
+    // sensor (filtered)
+    private volatile float lastMeasuredLux = 0.0f;
+    private volatile LuxFilter luxFilter = new LuxFilter.None();
 
     // fade/state
     private long lastUpdateTime = 0L;
@@ -56,6 +65,7 @@ public class ScreenManager extends BroadcastReceiver {
     // handler
     private final Handler fadeHandler = new Handler(Looper.getMainLooper());
     private final Runnable fadeRunnable = this::checkAndApplyBrightness;
+    private final Runnable luxUpdateRunnable = this::updateBrightnessFromLux;
 
     // prefs cached
     private final SharedPreferences prefs;
@@ -64,22 +74,35 @@ public class ScreenManager extends BroadcastReceiver {
     private volatile int cachedMinBrightness = MIN_BRIGHTNESS_DEFAULT;
     private volatile int cachedScreenSaverMinBrightness = MIN_BRIGHTNESS_DEFAULT;
     private volatile boolean cachedTouchToWake = true;
+    private volatile BrightnessCurve brightnessCurve = BrightnessCurve.defaultCurve(MIN_BRIGHTNESS_DEFAULT);
+    private volatile BrightnessCurve screenSaverBrightnessCurve = BrightnessCurve.defaultCurve(MIN_BRIGHTNESS_DEFAULT);
 
     private final Context context;
     private final BrightnessAnimator brightnessAnimator = new BrightnessAnimator();
 
+    // wake fast path: set once the backlight was raised for the current wake, cleared when going to sleep
+    private final AtomicBoolean fastWakeDone = new AtomicBoolean(false);
+    private final LatencyHistogram wakeLatency = new LatencyHistogram();
+    private final Runnable publishWakeLatencyRunnable = this::publishWakeLatency;
+
     private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener =
             (sharedPreferences, key) -> {
                 if (SP_AUTOMATIC_BRIGHTNESS.equals(key)) {
                     cachedAutomaticBrightness = sharedPreferences.getBoolean(SP_AUTOMATIC_BRIGHTNESS, true);
                 } else if (SP_BRIGHTNESS.equals(key)) {
                     cachedFixedBrightness = clamp(sharedPreferences.getInt(SP_BRIGHTNESS, DEFAULT_BRIGHTNESS), 0, 255);
-                } else if (SP_MIN_BRIGHTNESS.equals(key)) {
+                } else if (SP_MIN_BRIGHTNESS.equals(key) || SP_BRIGHTNESS_CURVE.equals(key)) {
                     cachedMinBrightness = clamp(sharedPreferences.getInt(SP_MIN_BRIGHTNESS, MIN_BRIGHTNESS_DEFAULT), 0, 255);
-                } else if (SP_SCREEN_SAVER_MIN_BRIGHTNESS.equals(key)) {
+                    brightnessCurve = compileCurve(sharedPreferences.getString(SP_BRIGHTNESS_CURVE, ""), cachedMinBrightness);
+                    fadeHandler.post(luxUpdateRunnable);
+                } else if (SP_SCREEN_SAVER_MIN_BRIGHTNESS.equals(key) || SP_SCREEN_SAVER_BRIGHTNESS_CURVE.equals(key)) {
                     cachedScreenSaverMinBrightness = clamp(sharedPreferences.getInt(SP_SCREEN_SAVER_MIN_BRIGHTNESS, MIN_BRIGHTNESS_DEFAULT), 0, 255);
+                    screenSaverBrightnessCurve = compileCurve(sharedPreferences.getString(SP_SCREEN_SAVER_BRIGHTNESS_CURVE, ""), cachedScreenSaverMinBrightness);
+                    fadeHandler.post(luxUpdateRunnable);
                 } else if (SP_TOUCH_TO_WAKE.equals(key)) {
                     cachedTouchToWake = sharedPreferences.getBoolean(SP_TOUCH_TO_WAKE, true);
+                } else if (key != null && key.startsWith(SP_LUX_FILTER)) {
+                    luxFilter = createLuxFilter(sharedPreferences);
                 }
             };
 
@@ -91,14 +114,10 @@ public class ScreenManager extends BroadcastReceiver {
 
         prefs.registerOnSharedPreferenceChangeListener(prefsListener);
 
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(INTENT_SCREEN_SAVER_STARTED);
-        intentFilter.addAction(INTENT_SCREEN_SAVER_STOPPED);
-        intentFilter.addAction(INTENT_TURN_SCREEN_ON);
-        intentFilter.addAction(INTENT_TURN_SCREEN_OFF);
-        intentFilter.addAction(INTENT_LIGHT_UPDATED);
-
-        LocalBroadcastManager.getInstance(context).registerReceiver(this, intentFilter);
+        // fade state is owned by the main thread; lux is pre-filtered on the sensor thread (see onLux)
+        mEventBus.screenSaver.register(this, EventBus.Delivery.MAIN);
+        mEventBus.screen.register(this, EventBus.Delivery.MAIN);
+        mEventBus.lux.register(this, EventBus.Delivery.INLINE);
 
         // Force screen on at boot so we never start at brightness 0; screensaver will handle dimming later
         setScreenOn(true);
@@ -111,19 +130,95 @@ public class ScreenManager extends BroadcastReceiver {
         cachedMinBrightness = clamp(prefs.getInt(SP_MIN_BRIGHTNESS, MIN_BRIGHTNESS_DEFAULT), 0, 255);
         cachedScreenSaverMinBrightness = clamp(prefs.getInt(SP_SCREEN_SAVER_MIN_BRIGHTNESS, MIN_BRIGHTNESS_DEFAULT), 0, 255);
         cachedTouchToWake = prefs.getBoolean(SP_TOUCH_TO_WAKE, true);
+        luxFilter = createLuxFilter(prefs);
+        brightnessCurve = compileCurve(prefs.getString(SP_BRIGHTNESS_CURVE, ""), cachedMinBrightness);
+        screenSaverBrightnessCurve = compileCurve(prefs.getString(SP_SCREEN_SAVER_BRIGHTNESS_CURVE, ""), cachedScreenSaverMinBrightness);
+    }
+
+    /** An empty or invalid spec falls back to the built-in ramp; the min brightness is the floor either way. */
+    private static BrightnessCurve compileCurve(String spec, int minBrightness) {
+        if (spec == null || spec.trim().isEmpty()) return BrightnessCurve.defaultCurve(minBrightness);
+        try {
+            return BrightnessCurve.compile(spec, minBrightness);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Invalid brightness curve '" + spec + "', using default: " + e.getMessage());
+            return BrightnessCurve.defaultCurve(minBrightness);
+        }
+    }
+
+    public BrightnessCurve getBrightnessCurve() {
+        return brightnessCurve;
+    }
+
+    public BrightnessCurve getScreenSaverBrightnessCurve() {
+        return screenSaverBrightnessCurve;
+    }
+
+    private static LuxFilter createLuxFilter(SharedPreferences prefs) {
+        String type = prefs.getString(SP_LUX_FILTER, LuxFilter.DEFAULT_TYPE);
+        Log.i(TAG, "Lux filter: " + type);
+        return LuxFilter.create(type,
+                prefs.getInt(SP_LUX_FILTER_TIME_CONSTANT, LuxFilter.DEFAULT_TIME_CONSTANT_MS),
+                prefs.getInt(SP_LUX_FILTER_WINDOW, LuxFilter.DEFAULT_WINDOW),
+                prefs.getInt(SP_LUX_FILTER_ATTACK, LuxFilter.DEFAULT_ATTACK_MS),
+                prefs.getInt(SP_LUX_FILTER_DECAY, LuxFilter.DEFAULT_DECAY_MS));
+    }
+
+    /** Lux as seen by auto-brightness, i.e. after the {@link LuxFilter}. */
+    public float getFilteredLux() {
+        return lastMeasuredLux;
     }
 
     public void onDestroy() {
-        LocalBroadcastManager.getInstance(context).unregisterReceiver(this);
+        mEventBus.screenSaver.unregister(this);
+        mEventBus.screen.unregister(this);
+        mEventBus.lux.unregister(this);
         prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
         fadeHandler.removeCallbacksAndMessages(null);
-        brightnessAnimator.cancel();
+        brightnessAnimator.shutdown();
+    }
+
+    public BrightnessAnimator.Stats getFadeStats() {
+        return brightnessAnimator.getStats();
+    }
+
+    public LatencyHistogram getWakeLatency() {
+        return wakeLatency;
+    }
+
+    /**
+     * Wake fast path, called straight from the input thread (touch-down on main, proximity on the sensor thread) before
+     * any screensaver/screen bookkeeping: the brightness the regular wake settles on is written right here, so the
+     * panel lights up within this call. The regular path follows and finds the backlight already there.
+     * @param inputTimeMs input event time in the {@link SystemClock#uptimeMillis()} base, for {@link #getWakeLatency()}
+     */
+    public void fastWake(long inputTimeMs, String source) {
+        boolean canWake = inScreenSaver || (!screenOn && cachedTouchToWake && WAKE_SOURCE_TOUCH.equals(source));
+        if (!canWake || !fastWakeDone.compareAndSet(false, true)) return;
+
+        mDeviceHelper.setScreenBrightness(awakeBrightness());
+        long latencyMs = SystemClock.uptimeMillis() - inputTimeMs;
+        wakeLatency.record(latencyMs, source);
+        fadeHandler.post(publishWakeLatencyRunnable);
+        if (BuildConfig.DEBUG) Log.d(TAG, "Fast wake (" + source + "): backlight on " + latencyMs + " ms after input");
+    }
+
+    private void publishWakeLatency() {
+        if (mMQTTServer == null || !mMQTTServer.shouldSend()) return;
+        try {
+            mMQTTServer.publishWakeLatency(wakeLatency.toJson().toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to encode wake latency", e);
+        }
     }
 
     public void setScreenOn(boolean on) {
         // keep explicit boolean for state; do not conflate with brightness
         screenOn = on;
         if (!on) {
+            fastWakeDone.set(false);
+            // the fade runs on its own thread: stop it before it writes another frame
+            brightnessAnimator.cancel();
             // keep brightness state consistent with screen off
             currentBrightness = 0;
         }
@@ -151,8 +246,7 @@ public class ScreenManager extends BroadcastReceiver {
         // If screen is off and touch-to-wake is enabled, turn screen back on
         if (!screenOn && cachedTouchToWake) {
             Log.i(TAG, "Touch detected, waking screen via touch-to-wake");
-            setScreenOn(true);
-            updateBrightness();
+            wakeNow("touch-to-wake immediate");
         }
     }
 
@@ -173,47 +267,51 @@ public class ScreenManager extends BroadcastReceiver {
 
     @Override
     @MainThread
-    public void onReceive(Context ctx, Intent intent) {
-        String action = intent.getAction();
-        if (action == null) return;
-
-        switch (action) {
-            case INTENT_SCREEN_SAVER_STARTED:
-                updateScreenSaverState(true);
-                break;
-            case INTENT_SCREEN_SAVER_STOPPED:
-                updateScreenSaverState(false);
-                break;
-            case INTENT_TURN_SCREEN_ON:
-                setScreenOn(true);
-                break;
-            case INTENT_TURN_SCREEN_OFF:
-                setScreenOn(false);
-                // When screen is turned off, reset brightness targets to 0 to avoid stale values
-                targetBrightness = 0;
-                currentBrightness = 0;
-                break;
-            case INTENT_LIGHT_UPDATED:
-                float lux = intent.getFloatExtra(INTENT_LIGHT_KEY, 0.0f);
-                if (Float.isNaN(lux) || lux < 0f) lux = 0f; // sanitize
-                lastMeasuredLux = lux;
-
-                // update brightness when lux changes only if automatic bri is enabled to prevent too many request
-                // TODO: implement some kind of debounce to prevent too many calls
-                if (automaticBrightness())
-                    updateBrightness();
-
-                break;
+    public void onScreenSaverChanged(boolean running) {
+        updateScreenSaverState(running);
+    }
+
+    @Override
+    @MainThread
+    public void onScreenChanged(boolean on) {
+        setScreenOn(on);
+        if (!on) {
+            // When screen is turned off, reset brightness targets to 0 to avoid stale values
+            targetBrightness = 0;
+            currentBrightness = 0;
         }
     }
 
+    /**
+     * Runs on the sensor thread for every sample. The reading goes through the {@link LuxFilter} first, timed by the
+     * sensor timestamp so a batch replayed at once is filtered with its real spacing; only a filtered value that moves
+     * the brightness target by at least {@link #MIN_BRIGHTNESS_STEP} is handed to the main thread, pending hand-offs
+     * are coalesced.
+     */
+    @Override
+    public void onLux(float lux, long timestampNanos) {
+        if (Float.isNaN(lux) || lux < 0f) lux = 0f; // sanitize
+        // keep feeding the filter while asleep, so waking up starts from a settled value
+        lux = luxFilter.apply(lux, timestampNanos / 1_000_000L);
+        lastMeasuredLux = lux;
+
+        // screen off / dark screensaver already forced 0, manual brightness doesn't depend on lux
+        if (!automaticBrightness() || !screenOn || (inScreenSaver && !screenSaverKeepsBacklightOn())) return;
+
+        int target = targetBrightness;
+        if (target >= 0 && Math.abs(getScreenBrightnessFromLux(lux) - target) < MIN_BRIGHTNESS_STEP) return;
+
+        fadeHandler.removeCallbacks(luxUpdateRunnable);
+        fadeHandler.post(luxUpdateRunnable);
+    }
+
     private synchronized void updateBrightness() {
         int desiredBrightness = computeDesiredBrightness();
 
-        // If screen is off or screensaver is active, force brightness to 0 immediately
+        // If screen is off or screensaver is active, force brightness to 0 (or the saver level) immediately
         if (!screenOn || inScreenSaver) {
-            targetBrightness = 0;
-            applyBrightness(0, "screen off or screensaver");
+            targetBrightness = desiredBrightness;
+            applyBrightness(desiredBrightness, "screen off or screensaver");
             fadeHandler.removeCallbacks(fadeRunnable);
             brightnessAnimator.cancel();
             return;
@@ -233,14 +331,33 @@ public class ScreenManager extends BroadcastReceiver {
         }
     }
 
+    /**
+     * The filtered lux moved the target: the awake screen goes through the hysteresis, a screensaver that keeps the
+     * backlight on fades to its curve right away (its level is low and changes slowly anyway).
+     */
+    private synchronized void updateBrightnessFromLux() {
+        if (!screenOn || !inScreenSaver) {
+            updateBrightness();
+            return;
+        }
+        int desiredBrightness = idleBrightness();
+        if (desiredBrightness == 0 || currentBrightness <= 0 || desiredBrightness == targetBrightness) return;
+        targetBrightness = desiredBrightness;
+        animateBrightnessTransition(currentBrightness, desiredBrightness);
+    }
+
     private int computeDesiredBrightness() {
         if (!screenOn || inScreenSaver) {
-            return 0;
+            return idleBrightness();
         }
+        return awakeBrightness();
+    }
 
+    /** Brightness for the awake screen, regardless of the current state. */
+    private int awakeBrightness() {
         int desiredBrightness;
         if (automaticBrightness()) {
-            desiredBrightness = getScreenBrightnessFromLux(lastMeasuredLux);
+            desiredBrightness = brightnessCurve.lookup(lastMeasuredLux);
         } else {
             desiredBrightness = fixedBrightness();
         }
@@ -274,7 +391,7 @@ public class ScreenManager extends BroadcastReceiver {
         from = clamp(from, 0, 255);
         to = clamp(to, 0, 255);
 
-        // Use the existing animator class if available; fallback to ValueAnimator if needed.
+        // Runs on the fade thread; a running fade is retargeted from where it is
         try {
             brightnessAnimator.animate(from, to, value -> {
                 applyBrightness(value, "animate");
@@ -286,19 +403,23 @@ public class ScreenManager extends BroadcastReceiver {
         }
     }
 
-    private int getScreenBrightnessFromLux(float lux) {
-        // sanitize input
-        if (Float.isNaN(lux) || lux < 0f) lux = 0f;
-
-        int minBrightness = inScreenSaver ? cachedScreenSaverMinBrightness : cachedMinBrightness;
-        minBrightness = clamp(minBrightness, 0, 255);
+    /**
+     * 0 while off; for savers that draw something (e.g. the low power clock) the screensaver curve, or the screensaver
+     * min brightness with manual brightness.
+     */
+    private int idleBrightness() {
+        if (!screenOn || !inScreenSaver || !screenSaverKeepsBacklightOn()) return 0;
+        // the screensaver curve is floored at the screensaver min brightness
+        return automaticBrightness() ? screenSaverBrightnessCurve.lookup(lastMeasuredLux) : cachedScreenSaverMinBrightness;
+    }
 
-        if (lux >= 500f) return 255;
-        if (lux <= 30f) return minBrightness;
+    private static boolean screenSaverKeepsBacklightOn() {
+        return mScreenSaverManager != null && mScreenSaverManager.getCurrentScreenSaver().keepsBacklightOn();
+    }
 
-        double slope = (255.0 - minBrightness) / (500.0 - 30.0);
-        double computed = minBrightness + slope * (lux - 30.0);
-        return clamp((int) Math.round(computed), 0, 255);
+    private int getScreenBrightnessFromLux(float lux) {
+        // precompiled table, NaN/negative lux map to the first bucket
+        return (inScreenSaver ? screenSaverBrightnessCurve : brightnessCurve).lookup(lux);
     }
 
     private synchronized void updateScreenSaverState(boolean newState) {
@@ -307,29 +428,35 @@ public class ScreenManager extends BroadcastReceiver {
             Log.d(TAG, "updateScreenSaverState newState=" + newState + ", screenOn=" + screenOn + ", currentBrightness=" + currentBrightness + ", targetBrightness=" + targetBrightness + ", lux=" + lastMeasuredLux);
         }
         if (newState) {
+            fastWakeDone.set(false);
             updateBrightness();
             // Force a second write shortly after entering screensaver to avoid hardware ignoring the first set
             fadeHandler.postDelayed(() -> {
-                if (inScreenSaver) {
-                    applyBrightness(0, "screensaver second write");
+                if (inScreenSaver && !fastWakeDone.get()) {
+                    applyBrightness(idleBrightness(), "screensaver second write");
                 }
             }, 300L);
         } else {
             // On wake from screensaver, raise brightness immediately (no 3s hysteresis)
-            // Ensure screen is marked on before computing brightness so we don't stick at 0
-            setScreenOn(true);
-
-            int desiredBrightness = computeDesiredBrightness();
-            targetBrightness = desiredBrightness;
-            currentBrightness = desiredBrightness;
-            fadeHandler.removeCallbacks(fadeRunnable);
-            brightnessAnimator.cancel();
-            applyBrightness(desiredBrightness, "exit screensaver immediate");
-            lastUpdateTime = System.currentTimeMillis();
-            if (BuildConfig.DEBUG) Log.d(TAG, "Exited screensaver, applied brightness immediately: " + desiredBrightness);
+            wakeNow("exit screensaver immediate");
         }
     }
 
+    /** Screen on at the awake brightness right away; usually the fast path already wrote the same value. */
+    private void wakeNow(String reason) {
+        // Ensure screen is marked on before computing brightness so we don't stick at 0
+        setScreenOn(true);
+
+        int desiredBrightness = computeDesiredBrightness();
+        targetBrightness = desiredBrightness;
+        currentBrightness = desiredBrightness;
+        fadeHandler.removeCallbacks(fadeRunnable);
+        brightnessAnimator.cancel();
+        applyBrightness(desiredBrightness, reason);
+        lastUpdateTime = System.currentTimeMillis();
+        if (BuildConfig.DEBUG) Log.d(TAG, "Woke up, applied brightness immediately: " + desiredBrightness);
+    }
+
     private static int clamp(int v, int min, int max) {
         if (v < min) return min;
         if (v > max) return max;
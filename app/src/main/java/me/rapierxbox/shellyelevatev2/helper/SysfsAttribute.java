@@ -0,0 +1,219 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Persistent handle on a single sysfs attribute.
+ * - Opens the file once and re-reads / rewrites it at offset 0
+ * - Uses reusable byte buffers, so hot paths don't allocate
+ * - Reopens the file transparently when the handle goes stale
+ */
+public class SysfsAttribute {
+
+    private static final int BUFFER_SIZE = 64;
+
+    private final String path;
+    private final boolean truncateOnWrite;
+    private final byte[] readBuffer = new byte[BUFFER_SIZE];
+    private final byte[] intBuffer = new byte[11];
+
+    private RandomAccessFile file;
+    private boolean writable;
+    private IOException lastError;
+
+    public SysfsAttribute(String path) {
+        this(path, false);
+    }
+
+    /** @param truncateOnWrite cut the file after each write; for regular files standing in for sysfs */
+    public SysfsAttribute(String path, boolean truncateOnWrite) {
+        this.path = path;
+        this.truncateOnWrite = truncateOnWrite;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean exists() {
+        if (file != null) return true;
+        File f = new File(path);
+        return f.exists() && f.isFile();
+    }
+
+    /** Last I/O error seen on this attribute, for logging by the caller. */
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Read the attribute into the internal buffer.
+     *
+     * @return number of bytes read, or -1 if the attribute can't be read
+     */
+    public synchronized int read() {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                RandomAccessFile f = open(false);
+                if (f == null) return -1;
+                f.seek(0);
+                int total = 0;
+                int n;
+                // sysfs attributes fit in a page; loop only for the rare short read
+                while (total < readBuffer.length && (n = f.read(readBuffer, total, readBuffer.length - total)) > 0) {
+                    total += n;
+                }
+                return total;
+            } catch (IOException e) {
+                lastError = e;
+                close();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copy the attribute content into {@code dst}.
+     *
+     * @return number of bytes copied, or -1 if the attribute can't be read
+     */
+    public synchronized int read(byte[] dst) {
+        int n = read();
+        if (n <= 0) return n;
+        n = Math.min(n, dst.length);
+        System.arraycopy(readBuffer, 0, dst, 0, n);
+        return n;
+    }
+
+    /**
+     * Parse all the digits of the attribute as a non-negative integer (the old sanitizeString behaviour).
+     */
+    public synchronized int readInt(int fallback) {
+        int n = read();
+        if (n <= 0) return fallback;
+
+        int value = 0;
+        boolean found = false;
+        for (int i = 0; i < n; i++) {
+            byte b = readBuffer[i];
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                found = true;
+            }
+        }
+        return found ? value : fallback;
+    }
+
+    /**
+     * Parse up to {@code out.length} unsigned integers separated by any non-digit (e.g. "26214:25000").
+     * Fractional digits after a '.' are skipped.
+     *
+     * @return number of values parsed, or -1 if the attribute can't be read
+     */
+    public synchronized int readUnsignedInts(int[] out) {
+        int n = read();
+        if (n < 0) return -1;
+
+        int count = 0;
+        int value = 0;
+        boolean inNumber = false;
+        boolean inFraction = false;
+        for (int i = 0; i < n && count < out.length; i++) {
+            byte b = readBuffer[i];
+            if (b >= '0' && b <= '9') {
+                if (inFraction) continue;
+                value = value * 10 + (b - '0');
+                inNumber = true;
+            } else if (b == '.' && inNumber) {
+                inFraction = true;
+            } else {
+                if (inNumber) out[count++] = value;
+                value = 0;
+                inNumber = false;
+                inFraction = false;
+            }
+        }
+        if (inNumber && count < out.length) out[count++] = value;
+        return count;
+    }
+
+    /** @return true if the attribute content contains the given byte (e.g. '1' for an enabled relay). */
+    public synchronized boolean contains(byte needle) {
+        int n = read();
+        for (int i = 0; i < n; i++) {
+            if (readBuffer[i] == needle) return true;
+        }
+        return false;
+    }
+
+    public synchronized boolean write(byte[] src, int off, int len) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                RandomAccessFile f = open(true);
+                if (f == null) return false;
+                f.seek(0);
+                f.write(src, off, len);
+                if (truncateOnWrite) f.setLength(len);
+                return true;
+            } catch (IOException e) {
+                lastError = e;
+                close();
+            }
+        }
+        return false;
+    }
+
+    public boolean write(byte[] src) {
+        return write(src, 0, src.length);
+    }
+
+    /** Write a non-negative integer as ASCII without allocating. */
+    public synchronized boolean writeInt(int value) {
+        if (value < 0) value = 0;
+        int pos = intBuffer.length;
+        do {
+            intBuffer[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        return write(intBuffer, pos, intBuffer.length - pos);
+    }
+
+    public synchronized void close() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException ignored) {}
+            file = null;
+        }
+    }
+
+    private RandomAccessFile open(boolean forWrite) throws IOException {
+        if (file != null && (writable || !forWrite)) return file;
+        close();
+
+        // "rw" would create a missing file; never do that just to read it
+        if (!forWrite && !new File(path).exists()) return null;
+
+        try {
+            file = new RandomAccessFile(path, "rw");
+            writable = true;
+        } catch (FileNotFoundException e) {
+            // read-only attributes (or missing files) can't be opened "rw"
+            if (forWrite) {
+                lastError = e;
+                return null;
+            }
+            try {
+                file = new RandomAccessFile(path, "r");
+                writable = false;
+            } catch (FileNotFoundException notFound) {
+                lastError = notFound;
+                return null;
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,137 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import static me.rapierxbox.shellyelevatev2.Constants.SP_WEBVIEW_RELOAD_AFTER_SLEEP;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_WEBVIEW_SLEEP_POLICY;
+
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.annotation.MainThread;
+
+import java.util.function.Supplier;
+
+/**
+ * Throttles the dashboard WebView while nobody can see it (screen off or screensaver running).
+ * Policies, each one includes the previous:
+ * - {@link #THROTTLE}: renderer process priority waived, so it competes for CPU like a background app
+ * - {@link #KEEP_CONNECTED}: {@link WebView#onPause()}, the page is hidden and stops rendering/animating; JS timers
+ *   keep running. The HA frontend closes its websocket a few minutes after the page is hidden unless the HA user's
+ *   "Automatically close connection" profile option is off; with it off, state is current on wake
+ * - {@link #SUSPEND}: {@link WebView#pauseTimers()} too, JS is frozen; the page re-syncs on wake
+ *   (visibilitychange), or is reloaded after {@code webviewReloadAfterSleep} minutes asleep
+ * Sleep is applied after {@link #SLEEP_DELAY_MS}, so the onScreenOff/onScreensaverOn JS events still run and a quick
+ * wake does nothing; wake is applied immediately.
+ */
+@MainThread
+public class WebViewSleepController {
+
+    private static final String TAG = "WebViewSleepController";
+
+    public static final String NONE = "none";
+    public static final String THROTTLE = "throttle";
+    public static final String KEEP_CONNECTED = "keepConnected";
+    public static final String SUSPEND = "suspend";
+    public static final String DEFAULT_POLICY = KEEP_CONNECTED;
+
+    private static final long SLEEP_DELAY_MS = 1000L;
+
+    private final Supplier<WebView> webView;
+    private final SharedPreferences prefs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable sleepRunnable = this::sleep;
+
+    private boolean screenOn = true;
+    private boolean screenSaverRunning = false;
+    private String appliedPolicy = NONE; // policy the WebView is currently asleep with
+    private long asleepSinceMs;
+
+    /** @param webView the current WebView; it is replaced when the render process dies */
+    public WebViewSleepController(Supplier<WebView> webView, SharedPreferences prefs) {
+        this.webView = webView;
+        this.prefs = prefs;
+    }
+
+    public void setScreenOn(boolean on) {
+        screenOn = on;
+        update();
+    }
+
+    public void setScreenSaverRunning(boolean running) {
+        screenSaverRunning = running;
+        update();
+    }
+
+    public boolean isAsleep() {
+        return !NONE.equals(appliedPolicy);
+    }
+
+    public void onDestroy() {
+        handler.removeCallbacks(sleepRunnable);
+        wake();
+    }
+
+    private void update() {
+        handler.removeCallbacks(sleepRunnable);
+        if (!screenOn || screenSaverRunning) {
+            if (!isAsleep()) handler.postDelayed(sleepRunnable, SLEEP_DELAY_MS);
+        } else {
+            wake();
+        }
+    }
+
+    private void sleep() {
+        String policy = prefs.getString(SP_WEBVIEW_SLEEP_POLICY, DEFAULT_POLICY);
+        if (NONE.equals(policy) || isAsleep()) return;
+
+        WebView view = webView.get();
+        switch (policy) {
+            case SUSPEND:
+                view.pauseTimers();
+                // fall through
+            case KEEP_CONNECTED:
+                view.onPause();
+                // fall through
+            case THROTTLE:
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    view.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_WAIVED, true);
+                }
+                break;
+            default:
+                Log.w(TAG, "Unknown WebView sleep policy: " + policy);
+                return;
+        }
+        appliedPolicy = policy;
+        asleepSinceMs = SystemClock.elapsedRealtime();
+        Log.i(TAG, "WebView asleep (" + policy + ")");
+    }
+
+    private void wake() {
+        if (!isAsleep()) return;
+
+        String policy = appliedPolicy;
+        appliedPolicy = NONE;
+        long asleepMs = SystemClock.elapsedRealtime() - asleepSinceMs;
+
+        // the view may have been replaced while asleep; all calls are harmless on a fresh one
+        WebView view = webView.get();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            view.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_IMPORTANT, true);
+        }
+        if (!THROTTLE.equals(policy)) view.onResume();
+        if (SUSPEND.equals(policy)) {
+            view.resumeTimers();
+
+            long reloadAfterMs = prefs.getInt(SP_WEBVIEW_RELOAD_AFTER_SLEEP, 0) * 60_000L;
+            if (reloadAfterMs > 0 && asleepMs >= reloadAfterMs) {
+                Log.i(TAG, "Asleep for " + asleepMs / 1000 + " s, reloading dashboard");
+                view.reload();
+            }
+        }
+        Log.i(TAG, "WebView awake after " + asleepMs + " ms (" + policy + ")");
+    }
+}
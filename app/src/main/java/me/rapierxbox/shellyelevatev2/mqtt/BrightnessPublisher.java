@@ -0,0 +1,107 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import static me.rapierxbox.shellyelevatev2.Constants.SP_MQTT_BRIGHTNESS_HEARTBEAT;
+import static me.rapierxbox.shellyelevatev2.Constants.SP_MQTT_BRIGHTNESS_LIVE;
+
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the screen brightness without flooding the broker with fade frames.
+ * - Trailing-edge debounce: a value is published once no new value arrived for {@link #SETTLE_MS},
+ *   i.e. when the fade / hysteresis has settled
+ * - Heartbeat: the settled value is republished every {@code mqttBrightnessHeartbeat} seconds (0 disables)
+ * - Live mode ({@code mqttBrightnessLive}): intermediate values too, at most one per {@link #LIVE_INTERVAL_MS}
+ */
+class BrightnessPublisher {
+
+    // longer than the gap between two fade frames (50 ms), short enough to feel immediate
+    static final long SETTLE_MS = 400L;
+    static final long LIVE_INTERVAL_MS = 250L;
+    static final int DEFAULT_HEARTBEAT_SECONDS = 300;
+
+    private final MQTTServer server;
+    private final ScheduledExecutorService scheduler;
+    private final SharedPreferences prefs;
+    private final Runnable settleRunnable = this::publishSettled;
+
+    private int latestBrightness = -1;
+    private int lastPublishedBrightness = -1;
+    private long lastLivePublishAtMs;
+    private ScheduledFuture<?> settleTask;
+    private ScheduledFuture<?> heartbeatTask;
+    private volatile boolean live;
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener = (sharedPreferences, key) -> {
+        if (SP_MQTT_BRIGHTNESS_LIVE.equals(key)) {
+            live = sharedPreferences.getBoolean(SP_MQTT_BRIGHTNESS_LIVE, false);
+        } else if (SP_MQTT_BRIGHTNESS_HEARTBEAT.equals(key)) {
+            scheduleHeartbeat(sharedPreferences.getInt(SP_MQTT_BRIGHTNESS_HEARTBEAT, DEFAULT_HEARTBEAT_SECONDS));
+        }
+    };
+
+    BrightnessPublisher(MQTTServer server, ScheduledExecutorService scheduler, SharedPreferences prefs) {
+        this.server = server;
+        this.scheduler = scheduler;
+        this.prefs = prefs;
+
+        live = prefs.getBoolean(SP_MQTT_BRIGHTNESS_LIVE, false);
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        scheduleHeartbeat(prefs.getInt(SP_MQTT_BRIGHTNESS_HEARTBEAT, DEFAULT_HEARTBEAT_SECONDS));
+    }
+
+    /** Called for every value written to the backlight, including fade frames. */
+    synchronized void onBrightnessChanged(int brightness) {
+        if (scheduler.isShutdown()) return;
+        latestBrightness = brightness;
+
+        if (live) {
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastLivePublishAtMs >= LIVE_INTERVAL_MS) {
+                lastLivePublishAtMs = now;
+                publish(brightness);
+            }
+        }
+
+        if (settleTask != null) settleTask.cancel(false);
+        settleTask = scheduler.schedule(settleRunnable, SETTLE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Publish right away, e.g. the current state after (re)connecting. */
+    synchronized void publishNow(int brightness) {
+        latestBrightness = brightness;
+        publish(brightness);
+    }
+
+    private synchronized void publishSettled() {
+        settleTask = null;
+        if (latestBrightness < 0 || latestBrightness == lastPublishedBrightness) return;
+        publish(latestBrightness);
+    }
+
+    private synchronized void publishHeartbeat() {
+        if (lastPublishedBrightness < 0) return;
+        publish(lastPublishedBrightness);
+    }
+
+    private void publish(int brightness) {
+        if (!server.shouldSend()) return;
+        lastPublishedBrightness = brightness;
+        server.publishScreenBrightness(brightness);
+    }
+
+    private synchronized void scheduleHeartbeat(int seconds) {
+        if (heartbeatTask != null) heartbeatTask.cancel(false);
+        heartbeatTask = null;
+        if (seconds <= 0 || scheduler.isShutdown()) return;
+        heartbeatTask = scheduler.scheduleWithFixedDelay(this::publishHeartbeat, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    void onDestroy() {
+        prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
+    }
+}
@@ -3,20 +3,14 @@ package me.rapierxbox.shellyelevatev2.mqtt;
 import static me.rapierxbox.shellyelevatev2.Constants.*;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.*;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.util.Log;
-import android.os.SystemClock;
-
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import org.eclipse.paho.mqttv5.client.IMqttToken;
 import org.eclipse.paho.mqttv5.client.MqttCallback;
-import org.eclipse.paho.mqttv5.client.MqttClient;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
 import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
 import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
 import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
@@ -27,42 +21,100 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 import me.rapierxbox.shellyelevatev2.DeviceModel;
 import me.rapierxbox.shellyelevatev2.BuildConfig;
+import me.rapierxbox.shellyelevatev2.events.EventBus;
+import me.rapierxbox.shellyelevatev2.helper.ClimateSnapshot;
 
 public class MQTTServer {
 
-    private MqttClient mMqttClient;
+    private volatile MqttAsyncClient mMqttClient;
     private final MemoryPersistence mMemoryPersistence;
     private final ShellyElevateMQTTCallback mShellyElevateMQTTCallback;
     private final MqttConnectionOptions mMqttConnectionsOptions;
     private final ScheduledExecutorService scheduler;
+    // connect/disconnect/subscribe may block for the connection timeout, they never hold up publishing
+    private final ScheduledExecutorService connectionLane;
+    private final PublishWindow publishWindow = new PublishWindow(this::onUndelivered);
     private volatile boolean periodicScheduled = false;
     private String clientId;
+    private volatile MqttTopics topics;
     private boolean validForConnection;
     private volatile boolean connecting = false;
-    private volatile int lastPublishedBrightness = Integer.MIN_VALUE;
-    private volatile long lastBrightnessSentAtMs = 0L;
-    private static final long MIN_BRIGHTNESS_PUBLISH_INTERVAL_MS = 500;
+    private final BrightnessPublisher brightnessPublisher;
+    private final EventBus.SettingsListener settingsListener = () -> {
+        Log.d("MQTT", "Settings changed - reconnecting with new config");
+        // Disconnect existing connection before reconnecting with new settings
+        reconnectWithNewSettings();
+    };
+    private static final long TEMP_HUM_PUBLISH_INTERVAL_S = 30;
+    private static final long DISCONNECT_TIMEOUT_MS = 2000L;
+
+    // Herd safety: after a broker or HA restart every panel reacts at once, spread them out
+    // - reconnect: exponential backoff with per-device jitter, 1 s + random(0, 5 s .. 60 s)
+    // - status republish: delayed by random(0, mqttRepublishSpread s)
+    // - update / HA online requests: token bucket, bursts of 2, then one per 30 s; later ones wait for the next token
+    private static final long RECONNECT_MIN_MS = 1000L;
+    private static final long RECONNECT_WINDOW_MS = 5000L;
+    private static final long RECONNECT_MAX_WINDOW_MS = 60_000L;
+    static final int DEFAULT_REPUBLISH_SPREAD_SECONDS = 5;
+    private final java.util.Random random = new java.util.Random();
+    private final TokenBucket republishRequests = new TokenBucket(2, 30_000L);
+    private final java.util.concurrent.atomic.AtomicInteger reconnectAttempt = new java.util.concurrent.atomic.AtomicInteger();
+    private ScheduledFuture<?> reconnectTask; // connection lane only
+    private final Object statusLock = new Object();
+    private ScheduledFuture<?> pendingStatus; // guarded by statusLock
+    private ScheduledFuture<?> deferredStatus; // guarded by statusLock, request waiting for a token
+    private boolean pendingForceDiscovery; // guarded by statusLock
+    private boolean pendingFullStatus; // guarded by statusLock, false = HA online only: skip retained telemetry
+
+    private volatile PublishPolicy publishPolicy = PublishPolicy.defaultPolicy();
 
     // Lightweight coalescing for bursty publishes (switches/buttons/relays)
     private static final long COALESCE_WINDOW_MS = 40L;
     private final Object coalesceLock = new Object();
-    private final java.util.HashMap<String, String> pendingPayloads = new java.util.HashMap<>();
-    private final java.util.HashMap<String, Integer> pendingQos = new java.util.HashMap<>();
-    private final java.util.HashMap<String, Boolean> pendingRetained = new java.util.HashMap<>();
+    private final java.util.HashMap<String, byte[]> pendingPayloads = new java.util.HashMap<>();
+    private final java.util.HashMap<String, Integer> pendingEntities = new java.util.HashMap<>();
     private volatile boolean flushScheduled = false;
 
+    // Discovery document: built and hashed once per configuration, republished only when it changed or HA restarted
+    private final Object discoveryLock = new Object();
+    private byte[] discoveryPayload; // guarded by discoveryLock, null = rebuild
+    private long discoveryHash;
+    private long publishedDiscoveryHash = -1; // what the current broker holds, -1 = unknown
+    private String discoveryBroker = "";
+    private String resumeSession; // broker/client ID of the last connection, a reconnect to it only replays
+
+    // Offline queue: what could not be delivered is replayed after reconnecting, DRAIN_BATCH per DRAIN_INTERVAL_MS
+    private static final String OUTBOUND_QUEUE_FILE = "mqtt_outbound.bin";
+    private static final int DRAIN_BATCH = 8;
+    private static final long DRAIN_INTERVAL_MS = 100L;
+    private static final long OUTBOUND_SAVE_DELAY_MS = 1000L;
+    private final OutboundQueue outbound;
+    private final java.util.concurrent.atomic.AtomicBoolean drainScheduled = new java.util.concurrent.atomic.AtomicBoolean();
+    private final java.util.concurrent.atomic.AtomicBoolean saveScheduled = new java.util.concurrent.atomic.AtomicBoolean();
+
     public MQTTServer() {
         mMemoryPersistence = new MemoryPersistence();
         mShellyElevateMQTTCallback = new ShellyElevateMQTTCallback();
         mMqttConnectionsOptions = new MqttConnectionOptions();
         scheduler = Executors.newScheduledThreadPool(1);
+        connectionLane = Executors.newSingleThreadScheduledExecutor();
+        brightnessPublisher = new BrightnessPublisher(this, scheduler, mSharedPreferences);
+        outbound = new OutboundQueue(new File(mApplicationContext.getFilesDir(), OUTBOUND_QUEUE_FILE));
+        if (isOutboundPersistent()) {
+            outbound.load();
+        } else {
+            outbound.deleteFile();
+        }
 
         setupClientId();
         registerSettingsReceiver();
@@ -76,19 +128,31 @@ public class MQTTServer {
             clientId = "shellyelevate-" + UUID.randomUUID().toString().replaceAll("-", "").substring(2, 6);
             mSharedPreferences.edit().putString(SP_MQTT_CLIENTID, clientId).apply();
         }
+        if (topics == null || !topics.clientId.equals(clientId)) topics = new MqttTopics(clientId);
+        // the policy goes into the discovery config too, both are rebuilt on a settings change
+        loadPublishPolicy();
+        synchronized (discoveryLock) {
+            discoveryPayload = null;
+        }
     }
 
-    private void registerSettingsReceiver() {
-        BroadcastReceiver settingsChangedBroadcastReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                Log.d("MQTT", "Settings changed - reconnecting with new config");
-                // Disconnect existing connection before reconnecting with new settings
-                reconnectWithNewSettings();
+    private void loadPublishPolicy() {
+        String spec = mSharedPreferences.getString(SP_MQTT_PUBLISH_POLICY, "");
+        PublishPolicy policy = PublishPolicy.defaultPolicy();
+        if (!spec.trim().isEmpty()) {
+            try {
+                policy = PublishPolicy.compile(spec);
+            } catch (IllegalArgumentException e) {
+                Log.w("MQTT", "Invalid publish policy '" + spec + "', using defaults: " + e.getMessage());
             }
-        };
-        LocalBroadcastManager.getInstance(mApplicationContext)
-                .registerReceiver(settingsChangedBroadcastReceiver, new IntentFilter(INTENT_SETTINGS_CHANGED));
+        }
+        publishPolicy = policy;
+        publishWindow.setPolicy(policy);
+    }
+
+    private void registerSettingsReceiver() {
+        // reconnectWithNewSettings only queues on the MQTT scheduler, safe to run on the posting thread
+        mEventBus.settings.register(settingsListener, EventBus.Delivery.INLINE);
     }
 
     /**
@@ -96,13 +160,13 @@ public class MQTTServer {
      * Called when settings are changed via HTTP API or settings UI.
      */
     private void reconnectWithNewSettings() {
-        scheduler.execute(() -> {
+        connectionLane.execute(() -> {
             try {
                 // Disconnect existing client if connected
                 if (mMqttClient != null && mMqttClient.isConnected()) {
                     Log.d("MQTT", "Disconnecting old MQTT connection before applying new settings");
                     try {
-                        mMqttClient.disconnect();
+                        mMqttClient.disconnect().waitForCompletion(DISCONNECT_TIMEOUT_MS);
                         mMqttClient.close();
                     } catch (MqttException e) {
                         Log.w("MQTT", "Error disconnecting during settings change", e);
@@ -110,6 +174,9 @@ public class MQTTServer {
                     mMqttClient = null;
                 }
                 
+                reconnectAttempt.set(0);
+                resumeSession = null;
+
                 // Update clientId from settings (mqttDeviceId)
                 setupClientId();
                 Log.d("MQTT", "Updated MQTT client ID to: " + clientId);
@@ -128,7 +195,7 @@ public class MQTTServer {
 
     private void schedulePeriodicTempHum() {
         if (periodicScheduled) return;
-        scheduler.scheduleWithFixedDelay(this::publishTempAndHum, 0, 30, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::publishTempAndHum, 0, TEMP_HUM_PUBLISH_INTERVAL_S, TimeUnit.SECONDS);
         periodicScheduled = true;
     }
 
@@ -162,7 +229,7 @@ public class MQTTServer {
 
         connecting = true;
         Log.d("MQTT", "Connecting...");
-        scheduler.execute(this::doConnect);
+        connectionLane.execute(this::doConnect);
     }
 
     private void doConnect() {
@@ -171,14 +238,28 @@ public class MQTTServer {
         try {
             mMqttConnectionsOptions.setUserName(mSharedPreferences.getString(SP_MQTT_USERNAME, ""));
             mMqttConnectionsOptions.setPassword(mSharedPreferences.getString(SP_MQTT_PASSWORD, "").getBytes());
-            mMqttConnectionsOptions.setAutomaticReconnect(true);
+            // reconnects are scheduled by us, with jitter (scheduleReconnect)
+            mMqttConnectionsOptions.setAutomaticReconnect(false);
             mMqttConnectionsOptions.setConnectionTimeout(5);
             mMqttConnectionsOptions.setCleanStart(true);
 
-            mMqttClient = new MqttClient(
-                mSharedPreferences.getString(SP_MQTT_BROKER, "") + ":" + mSharedPreferences.getInt(SP_MQTT_PORT, 1883),
-                clientId, mMemoryPersistence
-            );
+            String broker = mSharedPreferences.getString(SP_MQTT_BROKER, "") + ":" + mSharedPreferences.getInt(SP_MQTT_PORT, 1883);
+            synchronized (discoveryLock) {
+                if (!broker.equals(discoveryBroker)) {
+                    discoveryBroker = broker;
+                    publishedDiscoveryHash = -1;
+                }
+            }
+            if (mMqttClient != null) {
+                // a lost connection: the old client is disconnected, release it
+                try {
+                    mMqttClient.close();
+                } catch (MqttException e) {
+                    Log.w("MQTT", "Error closing previous client", e);
+                }
+            }
+            MqttAsyncClient client = new MqttAsyncClient(broker, clientId, mMemoryPersistence);
+            mMqttClient = client;
 
             // Set callback only once
             mMqttClient.setCallback(new MqttCallback() {
@@ -186,6 +267,7 @@ public class MQTTServer {
                 public void connectComplete(boolean reconnect, String serverURI) {
                     Log.i("MQTT", "Connected to " + serverURI + ", reconnect: " + reconnect);
                     connecting = false;
+                    reconnectAttempt.set(0);
                     safeOnConnected();
                 }
 
@@ -193,7 +275,7 @@ public class MQTTServer {
                 public void disconnected(MqttDisconnectResponse disconnectResponse) {
                     Log.w("MQTT", "Disconnected: " + disconnectResponse.getReasonString());
                     connecting = false;
-                    // automatically handled by reconnect
+                    if (client == mMqttClient) scheduleReconnect();
                 }
 
                 @Override
@@ -214,28 +296,69 @@ public class MQTTServer {
             });
 
             // LWT
-            MqttMessage lwtMessage = new MqttMessage("offline".getBytes());
-            lwtMessage.setQos(1);
-            lwtMessage.setRetained(true);
-            mMqttConnectionsOptions.setWill(parseTopic(MQTT_TOPIC_STATUS), lwtMessage);
+            MqttMessage lwtMessage = PublishWindow.message(MqttPayloads.OFFLINE, PublishPolicy.AVAILABILITY, publishPolicy);
+            mMqttConnectionsOptions.setWill(topics.get(MqttTopics.STATUS), lwtMessage);
 
-            mMqttClient.connect(mMqttConnectionsOptions);
+            publishWindow.attach(mMqttClient);
+            mMqttClient.connect(mMqttConnectionsOptions, null, new MqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    // connectComplete() takes over
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    onConnectFailed(exception);
+                }
+            });
         } catch (MqttException e) {
-            Log.e("MQTT", "Connect failed, scheduling retry in 60s: ", e);
-            connecting = false;
-            scheduler.schedule(this::connect, 60, TimeUnit.SECONDS);
+            onConnectFailed(e);
         }
     }
 
+    private void onConnectFailed(Throwable e) {
+        Log.e("MQTT", "Connect failed: ", e);
+        connecting = false;
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        if (connectionLane.isShutdown() || !isEnabled()) return;
+        int attempt = reconnectAttempt.getAndIncrement();
+        long window = Math.min(RECONNECT_MAX_WINDOW_MS, RECONNECT_WINDOW_MS << Math.min(attempt, 4));
+        long delayMs = RECONNECT_MIN_MS + (long) (random.nextDouble() * window);
+        Log.i("MQTT", "Reconnecting in " + delayMs + " ms (attempt " + (attempt + 1) + ")");
+        connectionLane.execute(() -> {
+            if (reconnectTask != null) reconnectTask.cancel(false);
+            reconnectTask = connectionLane.schedule(this::connect, delayMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
     private void safeOnConnected() {
-        scheduler.schedule(() -> {
+        connectionLane.schedule(() -> {
             if (mMqttClient != null && mMqttClient.isConnected()) {
                 try {
                     // Subscriptions
-                    mMqttClient.subscribe("shellyelevatev2/#", 1);
-                    mMqttClient.subscribe(MQTT_TOPIC_HOME_ASSISTANT_STATUS, 1);
-
-                    publishStatus();
+                    String[] commandTopics = mShellyElevateMQTTCallback.bind(topics,
+                            Math.max(DeviceModel.getReportedDevice().inputs, mDeviceHelper.getRelayCount()));
+                    int[] qos = new int[commandTopics.length];
+                    java.util.Arrays.fill(qos, 1);
+                    mMqttClient.subscribe(commandTopics, qos);
+
+                    String session;
+                    synchronized (discoveryLock) {
+                        session = discoveryBroker + "/" + clientId;
+                    }
+                    if (session.equals(resumeSession)) {
+                        // a reconnect: HA still has the config and states, only availability and what changed
+                        // while offline (the outbound queue) are sent
+                        Log.i("MQTT", "Reconnected, replaying " + outbound.size() + " queued messages");
+                        publishWindow.publish(outbound.message(topics.get(MqttTopics.STATUS), MqttPayloads.ONLINE, PublishPolicy.AVAILABILITY));
+                    } else {
+                        resumeSession = session;
+                        publishStatus();
+                    }
+                    scheduleDrain(0L);
                 } catch (Exception e) {
                     Log.e("MQTT", "onConnected error", e);
                 }
@@ -243,53 +366,132 @@ public class MQTTServer {
         }, 150, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Status republish requested over MQTT ({@code update} topics, HA online). Rate limited: without a token the
+     * request waits for the next one instead of being dropped. A request while a republish is pending or waiting
+     * joins it.
+     */
+    public void requestStatus(boolean forceDiscovery) {
+        synchronized (statusLock) {
+            if (pendingStatus != null || deferredStatus != null) {
+                pendingForceDiscovery |= forceDiscovery;
+                pendingFullStatus |= !forceDiscovery;
+                return;
+            }
+            if (!republishRequests.tryAcquire()) {
+                if (scheduler.isShutdown()) return;
+                pendingForceDiscovery |= forceDiscovery;
+                pendingFullStatus |= !forceDiscovery;
+                long waitMs = republishRequests.msUntilToken();
+                Log.i("MQTT", "Status republish rate limited, deferred by " + waitMs + " ms");
+                deferredStatus = scheduler.schedule(this::runDeferredStatus, waitMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        publishStatus(forceDiscovery);
+    }
+
+    private void runDeferredStatus() {
+        boolean forceDiscovery;
+        synchronized (statusLock) {
+            if (!republishRequests.tryAcquire()) {
+                // another caller took the token first; wait for the next one
+                deferredStatus = scheduler.schedule(this::runDeferredStatus, republishRequests.msUntilToken(), TimeUnit.MILLISECONDS);
+                return;
+            }
+            deferredStatus = null;
+            forceDiscovery = pendingForceDiscovery;
+        }
+        // the flags merged so far are still pending, publishStatus keeps them
+        publishStatus(forceDiscovery);
+    }
+
     public void publishStatus() {
-        if (mMqttClient == null || !mMqttClient.isConnected()) return;
+        publishStatus(false);
+    }
 
-        scheduler.execute(() -> {
-            try {
-                // Publish hello info
-                publishHello();
+    /**
+     * Republish hello, discovery config, online and all states, after a random delay within
+     * {@code mqttRepublishSpread} seconds.
+     *
+     * @param forceDiscovery HA came online: resend the discovery config even if the broker already holds it, but skip
+     *                       telemetry the broker retains (it refreshes on its own). States are always resent: HA also
+     *                       comes online after a broker restart, and the broker may have lost its retained messages
+     */
+    public void publishStatus(boolean forceDiscovery) {
+        if (mMqttClient == null || !mMqttClient.isConnected() || scheduler.isShutdown()) return;
+
+        synchronized (statusLock) {
+            pendingForceDiscovery |= forceDiscovery;
+            pendingFullStatus |= !forceDiscovery;
+            if (pendingStatus != null) return;
+            long spreadMs = mSharedPreferences.getInt(SP_MQTT_REPUBLISH_SPREAD, DEFAULT_REPUBLISH_SPREAD_SECONDS) * 1000L;
+            long delayMs = spreadMs > 0 ? (long) (random.nextDouble() * spreadMs) : 0L;
+            pendingStatus = scheduler.schedule(this::publishStatusNow, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
 
-                // Publish config
-                publishConfig();
+    private void publishStatusNow() {
+        boolean forceDiscovery;
+        boolean full;
+        synchronized (statusLock) {
+            forceDiscovery = pendingForceDiscovery;
+            full = pendingFullStatus;
+            pendingForceDiscovery = false;
+            pendingFullStatus = false;
+            pendingStatus = null;
+        }
+        if (!shouldSend()) return;
+        PublishPolicy policy = publishPolicy;
+        boolean telemetry = full || !policy.retain(PublishPolicy.TELEMETRY);
+
+        try {
+            // Publish hello info
+            publishHello();
 
-                // Publish online status last
-                publishInternal(parseTopic(MQTT_TOPIC_STATUS), "online", 1, true);
+            // Publish config
+            publishConfig(forceDiscovery);
 
-                // Stagger sensor publishes; consolidate Runnable allocations
-                scheduler.schedule(this::publishTempAndHum, 50, TimeUnit.MILLISECONDS);
+            // Publish online status last
+            publishInternal(topics.get(MqttTopics.STATUS), MqttPayloads.ONLINE, PublishPolicy.AVAILABILITY);
+
+            // Stagger sensor publishes; consolidate Runnable allocations
+            if (telemetry) scheduler.schedule(this::publishTempAndHum, 50, TimeUnit.MILLISECONDS);
                 
-                // Batch relay publishes to reduce lambda allocations
-                scheduler.schedule(() -> {
-                    for (int num = 0; num < DeviceModel.getReportedDevice().inputs; num++) {
-                        publishRelay(num, mDeviceHelper.getRelay(num));
-                    }
-                }, 100, TimeUnit.MILLISECONDS);
+            // Batch relay publishes to reduce lambda allocations
+            scheduler.schedule(() -> {
+                for (int num = 0; num < DeviceModel.getReportedDevice().inputs; num++) {
+                    publishRelay(num, mDeviceHelper.getRelay(num));
+                }
+            }, 100, TimeUnit.MILLISECONDS);
                 
-                // Batch remaining sensor publishes
-                scheduler.schedule(() -> {
+            // Batch remaining sensor publishes
+            scheduler.schedule(() -> {
+                if (telemetry) {
                     publishLux(mDeviceSensorManager.getLastMeasuredLux());
-                    publishScreenBrightness(mDeviceHelper.getScreenBrightness());
+                    brightnessPublisher.publishNow(mDeviceHelper.getScreenBrightness());
                     if (DeviceModel.getReportedDevice().hasProximitySensor) {
                         publishProximity(mDeviceSensorManager.getLastMeasuredDistance());
                     }
-                    publishSleeping(mScreenSaverManager.isScreenSaverRunning());
-                }, 150, TimeUnit.MILLISECONDS);
+                }
+                publishSleeping(mScreenSaverManager.isScreenSaverRunning());
+            }, 150, TimeUnit.MILLISECONDS);
 
-            } catch (Exception e) {
-                Log.e("MQTT", "publishStatus failed", e);
-            }
-        });
+        } catch (Exception e) {
+            Log.e("MQTT", "publishStatus failed", e);
+        }
     }
 
     public void disconnect() {
         Log.d("MQTT", "Disconnecting");
         if (mMqttClient != null && mMqttClient.isConnected()) {
             try {
+                // the last messages before going away: wait for them, bounded
                 deleteConfig();
-                mMqttClient.publish(parseTopic(MQTT_TOPIC_STATUS), "offline".getBytes(), 1, true);
-                mMqttClient.disconnect();
+                mMqttClient.publish(topics.get(MqttTopics.STATUS),
+                                PublishWindow.message(MqttPayloads.OFFLINE, PublishPolicy.AVAILABILITY, publishPolicy))
+                        .waitForCompletion(DISCONNECT_TIMEOUT_MS);
+                mMqttClient.disconnect().waitForCompletion(DISCONNECT_TIMEOUT_MS);
             } catch (MqttException e) {
                 Log.e("MQTT", "Error disconnecting MQTT client", e);
             }
@@ -304,17 +506,22 @@ public class MQTTServer {
         return isEnabled() && mMqttClient != null && mMqttClient.isConnected();
     }
 
-    public void publishInternal(String topic, String payload, int qos, boolean retained) {
+    /** @param entity {@link PublishPolicy} entity class, it decides QoS, retain and expiry */
+    public void publishInternal(String topic, String payload, int entity) {
+        publishInternal(topic, MqttPayloads.ascii(payload), entity);
+    }
+
+    /** {@code payload} may be a shared {@link MqttPayloads} array, it is never modified. Does not block. */
+    void publishInternal(String topic, byte[] payload, int entity) {
         if (scheduler.isShutdown()) return;
-        scheduler.execute(() -> publishInternalSync(topic, payload, qos, retained));
+        publishNow(topic, payload, entity);
     }
 
-    private void publishInternalCoalesced(String topic, String payload, int qos, boolean retained) {
+    private void publishInternalCoalesced(String topic, byte[] payload, int entity) {
         if (scheduler.isShutdown()) return;
         synchronized (coalesceLock) {
             pendingPayloads.put(topic, payload);
-            pendingQos.put(topic, qos);
-            pendingRetained.put(topic, retained);
+            pendingEntities.put(topic, entity);
             if (!flushScheduled) {
                 flushScheduled = true;
                 scheduler.schedule(this::flushPendingPublishes, COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
@@ -323,102 +530,156 @@ public class MQTTServer {
     }
 
     private void flushPendingPublishes() {
-        java.util.Map<String, String> toSend;
-        java.util.Map<String, Integer> qosMap;
-        java.util.Map<String, Boolean> retainedMap;
+        java.util.Map<String, byte[]> toSend;
+        java.util.Map<String, Integer> entityMap;
         synchronized (coalesceLock) {
             toSend = new java.util.HashMap<>(pendingPayloads);
-            qosMap = new java.util.HashMap<>(pendingQos);
-            retainedMap = new java.util.HashMap<>(pendingRetained);
+            entityMap = new java.util.HashMap<>(pendingEntities);
             pendingPayloads.clear();
-            pendingQos.clear();
-            pendingRetained.clear();
+            pendingEntities.clear();
             flushScheduled = false;
         }
 
         if (toSend.isEmpty()) return;
-        if (!shouldSend()) return;
 
-        // Publish all pending in the scheduler thread to avoid excess context switches
-        for (java.util.Map.Entry<String, String> e : toSend.entrySet()) {
+        // Hand all pending to the publish window (or the outbound queue) in one go
+        for (java.util.Map.Entry<String, byte[]> e : toSend.entrySet()) {
             String topic = e.getKey();
-            String payload = e.getValue();
-            int qos = qosMap.getOrDefault(topic, 1);
-            boolean retained = retainedMap.getOrDefault(topic, false);
-            publishInternalSync(topic, payload, qos, retained);
+            byte[] payload = e.getValue();
+            int entity = entityMap.getOrDefault(topic, PublishPolicy.STATE);
+            publishNow(topic, payload, entity);
         }
     }
 
-    private void publishInternalSync(String topic, String payload, int qos, boolean retained) {
-        if (!shouldSend()) {
-            Log.w("MQTT", "publishInternal skipped — client not connected: " + topic);
+    /** Events are never coalesced and keep their order, also across a disconnect. */
+    private void publishEvent(String topic, byte[] payload) {
+        if (scheduler.isShutdown()) return;
+        publishNow(topic, payload, PublishPolicy.EVENT);
+    }
+
+    private void publishNow(String topic, byte[] payload, int entity) {
+        if (!isEnabled()) return;
+        // numbered here, so the message keeps its place whichever way it comes back undelivered
+        OutboundQueue.Message message = outbound.message(topic, payload, entity);
+        // while older messages wait, newer ones queue behind them
+        if (!shouldSend() || !outbound.isEmpty()) {
+            enqueueOutbound(message);
             return;
         }
-        try {
-            MqttMessage message = new MqttMessage(payload.getBytes());
-            message.setQos(qos);
-            message.setRetained(retained);
-            mMqttClient.publish(topic, message);
-        } catch (MqttException e) {
-            Log.e("MQTT", "Failed to publish to " + topic, e);
+        publishWindow.publish(message);
+    }
+
+    private void onUndelivered(OutboundQueue.Message message) {
+        if (!isEnabled()) return;
+        enqueueOutbound(message);
+    }
+
+    private void enqueueOutbound(OutboundQueue.Message message) {
+        outbound.add(message);
+        if (shouldSend()) scheduleDrain(DRAIN_INTERVAL_MS);
+        if (isOutboundPersistent() && !scheduler.isShutdown() && saveScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                saveScheduled.set(false);
+                saveOutbound();
+            }, OUTBOUND_SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
         }
     }
 
-    public void publishTempAndHum() {
-        float temp = (float) mDeviceHelper.getTemperature();
-        float hum = (float) mDeviceHelper.getHumidity();
-        // Batch both publishes in one executor call to reduce thread handoffs
-        if (temp != -999 || hum != -999) {
-            scheduler.execute(() -> {
-                if (temp != -999) publishInternal(parseTopic(MQTT_TOPIC_TEMP_SENSOR), String.valueOf(temp), 1, false);
-                if (hum != -999) publishInternal(parseTopic(MQTT_TOPIC_HUM_SENSOR), String.valueOf(hum), 1, false);
-            });
+    private void scheduleDrain(long delayMs) {
+        if (scheduler.isShutdown() || !drainScheduled.compareAndSet(false, true)) return;
+        scheduler.schedule(this::drainOutbound, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void drainOutbound() {
+        drainScheduled.set(false);
+        if (!shouldSend()) return;
+
+        for (int i = 0; i < DRAIN_BATCH && publishWindow.getInFlight() < PublishWindow.WINDOW; i++) {
+            OutboundQueue.Message message = outbound.poll(publishPolicy);
+            if (message == null) break;
+            publishWindow.publish(message);
+        }
+        if (outbound.isEmpty()) {
+            saveOutbound();
+        } else {
+            scheduleDrain(DRAIN_INTERVAL_MS);
+        }
+    }
+
+    private boolean isOutboundPersistent() {
+        return mSharedPreferences.getBoolean(SP_MQTT_PERSIST_QUEUE, false);
+    }
+
+    private void saveOutbound() {
+        if (isOutboundPersistent()) {
+            outbound.save();
+        } else {
+            outbound.deleteFile();
         }
     }
 
+    /** Depth of the offline queue plus what is handed to the client but not acknowledged yet. */
+    public JSONObject getOutboundQueue() throws JSONException {
+        JSONObject json = outbound.toJson();
+        json.put("in_flight", publishWindow.getInFlight() + publishWindow.getQueued());
+        json.put("connected", shouldSend());
+        json.put("persistent", isOutboundPersistent());
+        json.put("policy", publishPolicy.getSpec());
+        return json;
+    }
+
+    public void publishTempAndHum() {
+        // Shared background sample; only re-read if it is older than our own publish period
+        ClimateSnapshot climate = mClimateSampler.getLatest(TimeUnit.SECONDS.toMillis(TEMP_HUM_PUBLISH_INTERVAL_S));
+        if (!climate.isValid()) return;
+        publishTemp((float) climate.temperature);
+        publishHum((float) climate.humidity);
+    }
+
     public void publishTemp(float temp) {
         if (temp == -999) return;
-        publishInternal(parseTopic(MQTT_TOPIC_TEMP_SENSOR), String.valueOf(temp), 1, false);
+        publishInternal(topics.get(MqttTopics.TEMP_SENSOR), MqttPayloads.decimal(temp, 2), PublishPolicy.TELEMETRY);
     }
 
     public void publishHum(float hum) {
         if (hum == -999) return;
-        publishInternal(parseTopic(MQTT_TOPIC_HUM_SENSOR), String.valueOf(hum), 1, false);
+        publishInternal(topics.get(MqttTopics.HUM_SENSOR), MqttPayloads.decimal(hum, 2), PublishPolicy.TELEMETRY);
     }
 
     public void publishLux(float lux) {
-        publishInternal(parseTopic(MQTT_TOPIC_LUX_SENSOR), String.valueOf(lux), 1, false);
+        publishInternal(topics.get(MqttTopics.LUX_SENSOR), MqttPayloads.decimal(lux, 1), PublishPolicy.TELEMETRY);
     }
 
-    public void publishScreenBrightness(int brightness) {
-        long now = SystemClock.elapsedRealtime();
-
-        synchronized (this) {
-            if (brightness == lastPublishedBrightness && (now - lastBrightnessSentAtMs) < MIN_BRIGHTNESS_PUBLISH_INTERVAL_MS) {
-                return;
-            }
-            lastPublishedBrightness = brightness;
-            lastBrightnessSentAtMs = now;
-        }
+    /**
+     * Report a brightness written to the backlight. Fade frames are debounced; only the settled value is published
+     * (plus a periodic heartbeat, and intermediate values when live reporting is enabled).
+     */
+    public void reportScreenBrightness(int brightness) {
+        brightnessPublisher.onBrightnessChanged(brightness);
+    }
 
-        publishInternal(parseTopic(MQTT_TOPIC_SCREEN_BRIGHTNESS), String.valueOf(brightness), 1, false);
+    public void publishScreenBrightness(int brightness) {
+        publishInternal(topics.get(MqttTopics.SCREEN_BRIGHTNESS), MqttPayloads.integer(brightness), PublishPolicy.TELEMETRY);
     }
+
     public void publishProximity(float distance) {
-        publishInternal(parseTopic(MQTT_TOPIC_PROXIMITY_SENSOR), String.valueOf(distance), 1, false);
+        publishInternal(topics.get(MqttTopics.PROXIMITY_SENSOR), MqttPayloads.decimal(distance, 1), PublishPolicy.TELEMETRY);
     }
 
     public void publishRelay(int num, boolean state) {
-        var mqttSuffix = (num >0 ? ("_" + num): "");
-        publishInternalCoalesced(parseTopic(MQTT_TOPIC_RELAY_STATE) + mqttSuffix, state ? "ON" : "OFF", 1, false);
+        publishInternalCoalesced(topics.relayState(num), MqttPayloads.onOff(state), PublishPolicy.STATE);
     }
 
     public void publishSwitch(int num, boolean state) {
-        var mqttSuffix = (num >0 ? ("_" + num): "");
-        publishInternalCoalesced(parseTopic(MQTT_TOPIC_BUTTON_STATE) + mqttSuffix, state?"PRESS":"RELEASE", 1, false);
+        publishInternalCoalesced(topics.switchState(num), state ? MqttPayloads.PRESS : MqttPayloads.RELEASE, PublishPolicy.STATE);
+    }
+
+    public void publishWakeLatency(String json) {
+        publishInternal(topics.get(MqttTopics.WAKE_LATENCY), json, PublishPolicy.TELEMETRY);
     }
 
     public void publishSleeping(boolean state) {
-        publishInternal(parseTopic(MQTT_TOPIC_SLEEPING_BINARY_SENSOR), state ? "ON" : "OFF", 1, false);
+        publishInternal(topics.get(MqttTopics.SLEEPING_BINARY_SENSOR), MqttPayloads.onOff(state), PublishPolicy.STATE);
     }
 
     /**
@@ -440,13 +701,13 @@ public class MQTTServer {
         String topic;
         if (number == 140) {
             // Power button has its own dedicated topic
-            topic = parseTopic(MQTT_TOPIC_POWER_BUTTON);
+            topic = topics.get(MqttTopics.POWER_BUTTON);
         } else {
             // Regular buttons (0-3)
-            topic = parseTopic(MQTT_TOPIC_BUTTON_STATE) + "/" + number;
+            topic = topics.buttonEvent(number);
         }
 
-        publishInternalCoalesced(topic, json.toString(), 1, false);
+        publishEvent(topic, MqttPayloads.ascii(json.toString()));
     }
 
     /**
@@ -458,7 +719,7 @@ public class MQTTServer {
     }
 
     public void publishSwipeEvent() {
-        publishInternal(parseTopic(MQTT_TOPIC_SWIPE_EVENT), "{\"event_type\": \"swipe\"}", 1, false);
+        publishEvent(topics.get(MqttTopics.SWIPE_EVENT), MqttPayloads.ascii("{\"event_type\": \"swipe\"}"));
     }
 
     public void publishHello() {
@@ -481,7 +742,7 @@ public class MQTTServer {
             json.put("modelName", device.name());
             json.put("proximity", device.hasProximitySensor ? "true" : "false");
 
-            publishInternal(parseTopic(MQTT_TOPIC_HELLO), json.toString(), 1, false);
+            publishInternal(topics.get(MqttTopics.HELLO), json.toString(), PublishPolicy.INFO);
         } catch (JSONException e) {
             Log.e("MQTT", "Error publishing hello", e);
         }
@@ -492,6 +753,7 @@ public class MQTTServer {
         eventPayload.put("p", "event");
         eventPayload.put("name", name);
         eventPayload.put("state_topic", stateTopic);
+        eventPayload.put("qos", publishPolicy.qos(PublishPolicy.EVENT));
         eventPayload.put("device_class", "button");
         eventPayload.put("event_types", new JSONArray()
                 .put(BUTTON_PRESS_TYPE_SHORT)
@@ -508,6 +770,7 @@ public class MQTTServer {
         sensorPayload.put("p", "sensor");
         sensorPayload.put("name", name);
         sensorPayload.put("state_topic", stateTopic);
+        sensorPayload.put("qos", publishPolicy.qos(PublishPolicy.EVENT));
         sensorPayload.put("unique_id", uniqueId);
         sensorPayload.put("object_id", "shelly_walldisplay_" + uniqueId);
         sensorPayload.put("device_class", "timestamp");
@@ -518,7 +781,26 @@ public class MQTTServer {
         return sensorPayload;
     }
 
-    private void publishConfig() throws JSONException, MqttException {
+    private void publishConfig(boolean force) throws JSONException {
+        byte[] payload;
+        synchronized (discoveryLock) {
+            if (discoveryPayload == null) {
+                discoveryPayload = MqttPayloads.ascii(buildConfig().toString());
+                CRC32 crc = new CRC32();
+                crc.update(discoveryPayload, 0, discoveryPayload.length);
+                discoveryHash = crc.getValue();
+            }
+            if (!force && discoveryHash == publishedDiscoveryHash) {
+                Log.d("MQTT", "Discovery config unchanged, not republished");
+                return;
+            }
+            publishedDiscoveryHash = discoveryHash;
+            payload = discoveryPayload;
+        }
+        publishNow(topics.get(MqttTopics.CONFIG_DEVICE), payload, PublishPolicy.DISCOVERY);
+    }
+
+    private JSONObject buildConfig() throws JSONException {
         JSONObject configPayload = new JSONObject();
 
         DeviceModel deviceModel = DeviceModel.getReportedDevice();
@@ -541,7 +823,8 @@ public class MQTTServer {
         JSONObject tempSensorPayload = new JSONObject();
         tempSensorPayload.put("p", "sensor");
         tempSensorPayload.put("name", "Temperature");
-        tempSensorPayload.put("state_topic", parseTopic(MQTT_TOPIC_TEMP_SENSOR));
+        tempSensorPayload.put("state_topic", topics.get(MqttTopics.TEMP_SENSOR));
+        tempSensorPayload.put("qos", publishPolicy.qos(PublishPolicy.TELEMETRY));
         tempSensorPayload.put("device_class", "temperature");
         tempSensorPayload.put("unit_of_measurement", "°C");
         tempSensorPayload.put("unique_id", clientId + "_temp");
@@ -551,7 +834,8 @@ public class MQTTServer {
         JSONObject humSensorPayload = new JSONObject();
         humSensorPayload.put("p", "sensor");
         humSensorPayload.put("name", "Humidity");
-        humSensorPayload.put("state_topic", parseTopic(MQTT_TOPIC_HUM_SENSOR));
+        humSensorPayload.put("state_topic", topics.get(MqttTopics.HUM_SENSOR));
+        humSensorPayload.put("qos", publishPolicy.qos(PublishPolicy.TELEMETRY));
         humSensorPayload.put("device_class", "humidity");
         humSensorPayload.put("unit_of_measurement", "%");
         humSensorPayload.put("unique_id", clientId + "_hum");
@@ -561,7 +845,8 @@ public class MQTTServer {
         JSONObject luxSensorPayload = new JSONObject();
         luxSensorPayload.put("p", "sensor");
         luxSensorPayload.put("name", "Light");
-        luxSensorPayload.put("state_topic", parseTopic(MQTT_TOPIC_LUX_SENSOR));
+        luxSensorPayload.put("state_topic", topics.get(MqttTopics.LUX_SENSOR));
+        luxSensorPayload.put("qos", publishPolicy.qos(PublishPolicy.TELEMETRY));
         luxSensorPayload.put("device_class", "illuminance");
         luxSensorPayload.put("unit_of_measurement", "lx");
         luxSensorPayload.put("unique_id", clientId + "_lux");
@@ -572,7 +857,8 @@ public class MQTTServer {
             JSONObject proximitySensorPayload = new JSONObject();
             proximitySensorPayload.put("p", "sensor");
             proximitySensorPayload.put("name", "Proximity");
-            proximitySensorPayload.put("state_topic", parseTopic(MQTT_TOPIC_PROXIMITY_SENSOR));
+            proximitySensorPayload.put("state_topic", topics.get(MqttTopics.PROXIMITY_SENSOR));
+            proximitySensorPayload.put("qos", publishPolicy.qos(PublishPolicy.TELEMETRY));
             proximitySensorPayload.put("device_class", "distance");
             proximitySensorPayload.put("unit_of_measurement", "cm");
             proximitySensorPayload.put("unique_id", clientId + "_proximity");
@@ -582,7 +868,7 @@ public class MQTTServer {
 
         // power button (button 140) - only for V2 devices that have it
         if (DeviceModel.getReportedDevice().hasPowerButton) {
-            String powerButtonTopic = parseTopic(MQTT_TOPIC_POWER_BUTTON);
+            String powerButtonTopic = topics.get(MqttTopics.POWER_BUTTON);
             components.put(clientId + "_power_button", 
                     createButtonEventConfig("Power Button", powerButtonTopic, clientId + "_power_button"));
             components.put(clientId + "_power_button_lastpress", 
@@ -593,7 +879,7 @@ public class MQTTServer {
         var buttons = DeviceModel.getReportedDevice().buttons;
         if (buttons > 0) {
             for (int i = 0; i < buttons; i++) {
-                String buttonTopic = parseTopic(MQTT_TOPIC_BUTTON_STATE) + "/" + i;
+                String buttonTopic = topics.buttonEvent(i);
                 String buttonId = clientId + "_button_" + i;
                 
                 components.put(buttonId, 
@@ -604,13 +890,13 @@ public class MQTTServer {
         }
 
         for (int num = 0; num < DeviceModel.getReportedDevice().inputs; num++) {
-            String mqttSuffix = (num >0 ? ("_" + num): "");
             // relay
             JSONObject relaySwitchPayload = new JSONObject();
             relaySwitchPayload.put("p", "switch");
             relaySwitchPayload.put("name", ("Relay " + (num >0 ? (" " + num): "")).trim());
-            relaySwitchPayload.put("state_topic", parseTopic(MQTT_TOPIC_RELAY_STATE) + mqttSuffix);
-            relaySwitchPayload.put("command_topic", parseTopic(MQTT_TOPIC_RELAY_COMMAND) + mqttSuffix);
+            relaySwitchPayload.put("state_topic", topics.relayState(num));
+            relaySwitchPayload.put("qos", publishPolicy.qos(PublishPolicy.STATE));
+            relaySwitchPayload.put("command_topic", topics.relayCommand(num));
             relaySwitchPayload.put("device_class", "outlet");
             relaySwitchPayload.put("unique_id", clientId + "_relay" + (num >0 ? ("_" + num): ""));
             relaySwitchPayload.put("object_id", "shelly_walldisplay_" + clientId + "_relay" + (num >0 ? ("_" + num): ""));
@@ -619,7 +905,7 @@ public class MQTTServer {
             JSONObject buttonPayload = new JSONObject();
             buttonPayload.put("p", "button");
             buttonPayload.put("name", ("Switch " + (num > 0 ? (" " + num) : "")).trim());
-            buttonPayload.put("command_topic", parseTopic(MQTT_TOPIC_SWITCH_STATE) + mqttSuffix);
+            buttonPayload.put("command_topic", topics.switchCommand(num));
             buttonPayload.put("payload_press", "PRESS");
             buttonPayload.put("payload_release", "RELEASE");
             buttonPayload.put("value_template", "{{ value }}");
@@ -632,7 +918,7 @@ public class MQTTServer {
         JSONObject sleepButtonPayload = new JSONObject();
         sleepButtonPayload.put("p", "button");
         sleepButtonPayload.put("name", "Sleep");
-        sleepButtonPayload.put("command_topic", parseTopic(MQTT_TOPIC_SLEEP_BUTTON));
+        sleepButtonPayload.put("command_topic", topics.get(MqttTopics.SLEEP_BUTTON));
         sleepButtonPayload.put("unique_id", clientId + "_sleep");
         sleepButtonPayload.put("object_id", "shelly_walldisplay_" + clientId + "_sleep");
         components.put(clientId + "_sleep", sleepButtonPayload);
@@ -640,7 +926,7 @@ public class MQTTServer {
         JSONObject wakeButtonPayload = new JSONObject();
         wakeButtonPayload.put("p", "button");
         wakeButtonPayload.put("name", "Wake");
-        wakeButtonPayload.put("command_topic", parseTopic(MQTT_TOPIC_WAKE_BUTTON));
+        wakeButtonPayload.put("command_topic", topics.get(MqttTopics.WAKE_BUTTON));
         wakeButtonPayload.put("unique_id", clientId + "_wake");
         wakeButtonPayload.put("object_id", "shelly_walldisplay_" + clientId + "_wake");
         components.put(clientId + "_wake", wakeButtonPayload);
@@ -648,7 +934,7 @@ public class MQTTServer {
         JSONObject refreshWebviewButtonPayload = new JSONObject();
         refreshWebviewButtonPayload.put("p", "button");
         refreshWebviewButtonPayload.put("name", "Refresh Webview");
-        refreshWebviewButtonPayload.put("command_topic", parseTopic(MQTT_TOPIC_REFRESH_WEBVIEW_BUTTON));
+        refreshWebviewButtonPayload.put("command_topic", topics.get(MqttTopics.REFRESH_WEBVIEW_BUTTON));
         refreshWebviewButtonPayload.put("device_class", "restart");
         refreshWebviewButtonPayload.put("unique_id", clientId + "_refresh_webview");
         refreshWebviewButtonPayload.put("object_id", "shelly_walldisplay_" + clientId + "_refresh_webview");
@@ -657,7 +943,7 @@ public class MQTTServer {
         JSONObject rebootButtonPayload = new JSONObject();
         rebootButtonPayload.put("p", "button");
         rebootButtonPayload.put("name", "Reboot");
-        rebootButtonPayload.put("command_topic", parseTopic(MQTT_TOPIC_REBOOT_BUTTON));
+        rebootButtonPayload.put("command_topic", topics.get(MqttTopics.REBOOT_BUTTON));
         rebootButtonPayload.put("device_class", "restart");
         rebootButtonPayload.put("unique_id", clientId + "_reboot");
         rebootButtonPayload.put("object_id", "shelly_walldisplay_" + clientId + "_reboot");
@@ -666,7 +952,8 @@ public class MQTTServer {
         JSONObject swipeEventPayload = new JSONObject();
         swipeEventPayload.put("p", "event");
         swipeEventPayload.put("name", "Swipe Event");
-        swipeEventPayload.put("state_topic", parseTopic(MQTT_TOPIC_SWIPE_EVENT));
+        swipeEventPayload.put("state_topic", topics.get(MqttTopics.SWIPE_EVENT));
+        swipeEventPayload.put("qos", publishPolicy.qos(PublishPolicy.EVENT));
         swipeEventPayload.put("device_class", "button");
         swipeEventPayload.put("event_types", new JSONArray().put("swipe"));
         swipeEventPayload.put("unique_id", clientId + "_swipe_event");
@@ -676,26 +963,43 @@ public class MQTTServer {
         JSONObject sleepingBinarySensorPayload = new JSONObject();
         sleepingBinarySensorPayload.put("p", "binary_sensor");
         sleepingBinarySensorPayload.put("name", "Sleeping");
-        sleepingBinarySensorPayload.put("state_topic", parseTopic(MQTT_TOPIC_SLEEPING_BINARY_SENSOR));
+        sleepingBinarySensorPayload.put("state_topic", topics.get(MqttTopics.SLEEPING_BINARY_SENSOR));
+        sleepingBinarySensorPayload.put("qos", publishPolicy.qos(PublishPolicy.STATE));
         sleepingBinarySensorPayload.put("unique_id", clientId + "_sleeping");
         sleepingBinarySensorPayload.put("object_id", "shelly_walldisplay_" + clientId + "_sleeping");
         components.put(clientId + "_sleeping", sleepingBinarySensorPayload);
 
+        JSONObject wakeLatencySensorPayload = new JSONObject();
+        wakeLatencySensorPayload.put("p", "sensor");
+        wakeLatencySensorPayload.put("name", "Wake latency");
+        wakeLatencySensorPayload.put("state_topic", topics.get(MqttTopics.WAKE_LATENCY));
+        wakeLatencySensorPayload.put("qos", publishPolicy.qos(PublishPolicy.TELEMETRY));
+        wakeLatencySensorPayload.put("value_template", "{{ value_json.last_ms }}");
+        wakeLatencySensorPayload.put("json_attributes_topic", topics.get(MqttTopics.WAKE_LATENCY));
+        wakeLatencySensorPayload.put("device_class", "duration");
+        wakeLatencySensorPayload.put("unit_of_measurement", "ms");
+        wakeLatencySensorPayload.put("entity_category", "diagnostic");
+        wakeLatencySensorPayload.put("unique_id", clientId + "_wake_latency");
+        wakeLatencySensorPayload.put("object_id", "shelly_walldisplay_" + clientId + "_wake_latency");
+        components.put(clientId + "_wake_latency", wakeLatencySensorPayload);
+
         // TODO: brightness as both state and control
 
         configPayload.put("cmps", components);
 
         configPayload.put("state_topic", MQTT_TOPIC_STATUS);
 
-        mMqttClient.publish(parseTopic(MQTT_TOPIC_CONFIG_DEVICE), configPayload.toString().getBytes(), 1, true);
+        return configPayload;
     }
 
     private void deleteConfig() throws MqttException {
-        mMqttClient.publish(parseTopic(MQTT_TOPIC_CONFIG_DEVICE), "".getBytes(), 1, false);
-    }
-
-    private String parseTopic(String topic) {
-        return topic.replace("%s", clientId);
+        synchronized (discoveryLock) {
+            publishedDiscoveryHash = -1;
+        }
+        // an empty retained message removes the retained config
+        mMqttClient.publish(topics.get(MqttTopics.CONFIG_DEVICE),
+                        PublishWindow.message(MqttPayloads.EMPTY, PublishPolicy.DISCOVERY, publishPolicy))
+                .waitForCompletion(DISCONNECT_TIMEOUT_MS);
     }
 
     public String getClientId() {
@@ -703,7 +1007,11 @@ public class MQTTServer {
     }
 
     public void onDestroy() {
+        mEventBus.settings.unregister(settingsListener);
+        brightnessPublisher.onDestroy();
         disconnect();
+        saveOutbound();
         if (scheduler != null && !scheduler.isShutdown()) scheduler.shutdown();
+        connectionLane.shutdown();
     }
 }
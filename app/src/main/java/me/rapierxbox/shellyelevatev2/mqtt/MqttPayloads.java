@@ -0,0 +1,81 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pre-encoded MQTT payloads. The arrays are shared between messages and must never be modified.
+ * - Fixed states (ON/OFF, PRESS/RELEASE, online/offline) are encoded once
+ * - Integers 0-255 (brightness) come from a table
+ * - Decimals are formatted straight to ASCII in a scratch buffer, the only allocation is the exact-size result
+ */
+final class MqttPayloads {
+
+    static final byte[] ON = ascii("ON");
+    static final byte[] OFF = ascii("OFF");
+    static final byte[] PRESS = ascii("PRESS");
+    static final byte[] RELEASE = ascii("RELEASE");
+    static final byte[] ONLINE = ascii("online");
+    static final byte[] OFFLINE = ascii("offline");
+    static final byte[] EMPTY = new byte[0];
+
+    private static final byte[][] SMALL_INTS = new byte[256][];
+    private static final long[] POW10 = {1L, 10L, 100L, 1000L};
+    private static final double MAX_DECIMAL = 1e15; // beyond this the scaled long could overflow
+    private static final byte[] SCRATCH = new byte[24];
+
+    static {
+        for (int i = 0; i < SMALL_INTS.length; i++) SMALL_INTS[i] = ascii(String.valueOf(i));
+    }
+
+    private MqttPayloads() {
+    }
+
+    static byte[] onOff(boolean on) {
+        return on ? ON : OFF;
+    }
+
+    static byte[] integer(int value) {
+        return value >= 0 && value < SMALL_INTS.length ? SMALL_INTS[value] : ascii(String.valueOf(value));
+    }
+
+    /**
+     * Plain decimal with up to {@code decimals} (1-3) fraction digits; trailing zeros are dropped but one is kept, so
+     * 21.50 reads {@code 21.5} and 300 reads {@code 300.0} like {@link String#valueOf(float)}, without the exponent
+     * notation and float noise.
+     */
+    static byte[] decimal(float value, int decimals) {
+        if (Float.isNaN(value) || Math.abs(value) >= MAX_DECIMAL) return ascii(String.valueOf(value));
+
+        long scale = POW10[decimals];
+        long scaled = Math.round(Math.abs((double) value) * scale);
+        boolean negative = value < 0 && scaled != 0;
+        long whole = scaled / scale;
+        long fraction = scaled % scale;
+
+        int digits = decimals;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+
+        synchronized (SCRATCH) {
+            int pos = SCRATCH.length;
+            for (int i = 0; i < digits; i++) {
+                SCRATCH[--pos] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            SCRATCH[--pos] = '.';
+            do {
+                SCRATCH[--pos] = (byte) ('0' + whole % 10);
+                whole /= 10;
+            } while (whole > 0);
+            if (negative) SCRATCH[--pos] = '-';
+            return Arrays.copyOfRange(SCRATCH, pos, SCRATCH.length);
+        }
+    }
+
+    static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
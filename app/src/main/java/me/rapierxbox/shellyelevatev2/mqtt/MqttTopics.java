@@ -0,0 +1,109 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import static me.rapierxbox.shellyelevatev2.Constants.*;
+
+/**
+ * All topics of one client ID, resolved once into an indexed table; a new instance is built when the client ID
+ * changes. Publishing looks a topic up by index instead of running {@code replace("%s", clientId)} and suffix
+ * concatenation per message.
+ */
+final class MqttTopics {
+
+    static final int CONFIG_DEVICE = 0;
+    static final int STATUS = 1;
+    static final int TEMP_SENSOR = 2;
+    static final int HUM_SENSOR = 3;
+    static final int LUX_SENSOR = 4;
+    static final int SCREEN_BRIGHTNESS = 5;
+    static final int PROXIMITY_SENSOR = 6;
+    static final int UPDATE = 7;
+    static final int HELLO = 8;
+    static final int SLEEP_BUTTON = 9;
+    static final int WAKE_BUTTON = 10;
+    static final int REFRESH_WEBVIEW_BUTTON = 11;
+    static final int REBOOT_BUTTON = 12;
+    static final int POWER_BUTTON = 13;
+    static final int SWIPE_EVENT = 14;
+    static final int SLEEPING_BINARY_SENSOR = 15;
+    static final int WAKE_LATENCY = 16;
+
+    private static final String[] TEMPLATES = {
+            MQTT_TOPIC_CONFIG_DEVICE,
+            MQTT_TOPIC_STATUS,
+            MQTT_TOPIC_TEMP_SENSOR,
+            MQTT_TOPIC_HUM_SENSOR,
+            MQTT_TOPIC_LUX_SENSOR,
+            MQTT_TOPIC_SCREEN_BRIGHTNESS,
+            MQTT_TOPIC_PROXIMITY_SENSOR,
+            MQTT_TOPIC_UPDATE,
+            MQTT_TOPIC_HELLO,
+            MQTT_TOPIC_SLEEP_BUTTON,
+            MQTT_TOPIC_WAKE_BUTTON,
+            MQTT_TOPIC_REFRESH_WEBVIEW_BUTTON,
+            MQTT_TOPIC_REBOOT_BUTTON,
+            MQTT_TOPIC_POWER_BUTTON,
+            MQTT_TOPIC_SWIPE_EVENT,
+            MQTT_TOPIC_SLEEPING_BINARY_SENSOR,
+            MQTT_TOPIC_WAKE_LATENCY,
+    };
+
+    // indexed topics beyond this are built on demand
+    private static final int PRESIZED_INDEXES = 8;
+
+    final String clientId;
+    private final String[] topics = new String[TEMPLATES.length];
+    private final String[] relayState = new String[PRESIZED_INDEXES];
+    private final String[] relayCommand = new String[PRESIZED_INDEXES];
+    private final String[] switchState = new String[PRESIZED_INDEXES];
+    private final String[] buttonEvent = new String[PRESIZED_INDEXES];
+    private final String[] switchCommand = new String[PRESIZED_INDEXES];
+
+    MqttTopics(String clientId) {
+        this.clientId = clientId;
+        for (int i = 0; i < TEMPLATES.length; i++) topics[i] = resolve(TEMPLATES[i]);
+        for (int i = 0; i < PRESIZED_INDEXES; i++) {
+            relayState[i] = resolve(MQTT_TOPIC_RELAY_STATE) + suffix(i);
+            relayCommand[i] = resolve(MQTT_TOPIC_RELAY_COMMAND) + suffix(i);
+            switchState[i] = resolve(MQTT_TOPIC_BUTTON_STATE) + suffix(i);
+            buttonEvent[i] = resolve(MQTT_TOPIC_BUTTON_STATE) + "/" + i;
+            switchCommand[i] = resolve(MQTT_TOPIC_SWITCH_STATE) + suffix(i);
+        }
+    }
+
+    String get(int index) {
+        return topics[index];
+    }
+
+    /** {@code relay_state}, {@code relay_state_1}, ... */
+    String relayState(int num) {
+        return num >= 0 && num < PRESIZED_INDEXES ? relayState[num] : resolve(MQTT_TOPIC_RELAY_STATE) + suffix(num);
+    }
+
+    /** {@code relay_command}, {@code relay_command_1}, ... */
+    String relayCommand(int num) {
+        return num >= 0 && num < PRESIZED_INDEXES ? relayCommand[num] : resolve(MQTT_TOPIC_RELAY_COMMAND) + suffix(num);
+    }
+
+    /** Input state: {@code button}, {@code button_1}, ... */
+    String switchState(int num) {
+        return num >= 0 && num < PRESIZED_INDEXES ? switchState[num] : resolve(MQTT_TOPIC_BUTTON_STATE) + suffix(num);
+    }
+
+    /** Button press events: {@code button/0}, {@code button/1}, ... */
+    String buttonEvent(int num) {
+        return num >= 0 && num < PRESIZED_INDEXES ? buttonEvent[num] : resolve(MQTT_TOPIC_BUTTON_STATE) + "/" + num;
+    }
+
+    /** Discovery "Switch" button commands: {@code switch_state}, {@code switch_state_1}, ... */
+    String switchCommand(int num) {
+        return num >= 0 && num < PRESIZED_INDEXES ? switchCommand[num] : resolve(MQTT_TOPIC_SWITCH_STATE) + suffix(num);
+    }
+
+    private String resolve(String template) {
+        return template.replace("%s", clientId);
+    }
+
+    private static String suffix(int num) {
+        return num > 0 ? "_" + num : "";
+    }
+}
@@ -0,0 +1,224 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Messages that could not be delivered yet, replayed by a rate-limited drain once connected.
+ * - Every message gets a sequence number when it is published ({@link #message}); it travels with the message through
+ *   the publish window, so messages handed back late (in-flight failures, the window's backlog) still go in order
+ * - Events (button presses, swipes) are kept in sequence order; beyond {@link #MAX_EVENTS} the oldest are dropped
+ * - State topics (relays, sleeping, sensors) keep only their last value, in the order they first changed; an older
+ *   value handed back late never replaces a newer one
+ * - Messages past their {@link PublishPolicy} expiry are dropped instead of replayed
+ * - Optionally mirrored to a file, so a restart while offline loses nothing either; written to a side file and renamed
+ *   over it, so a crash mid-write leaves the previous version (plain java.io, the class runs in JVM unit tests)
+ */
+final class OutboundQueue {
+
+    private static final String TAG = "MQTT";
+    private static final int FILE_VERSION = 3;
+
+    static final int MAX_EVENTS = 64;
+    static final int MAX_STATES = 64;
+
+    static final class Message {
+        final String topic;
+        final byte[] payload;
+        final int entity;
+        final long seq;
+        final long queuedAtMs; // publish time, wall clock so it survives a restart
+
+        Message(String topic, byte[] payload, int entity, long seq, long queuedAtMs) {
+            this.topic = topic;
+            this.payload = payload;
+            this.entity = entity;
+            this.seq = seq;
+            this.queuedAtMs = queuedAtMs;
+        }
+
+        boolean isEvent() {
+            return entity == PublishPolicy.EVENT;
+        }
+    }
+
+    private final File file;
+    private final File newFile;
+    private final AtomicLong lastSeq = new AtomicLong();
+
+    // guarded by this
+    private final TreeMap<Long, Message> events = new TreeMap<>();
+    private final LinkedHashMap<String, Message> states = new LinkedHashMap<>();
+    private long dropped;
+    private long expired;
+    private boolean dirty;
+
+    OutboundQueue(File file) {
+        this.file = file;
+        this.newFile = new File(file.getPath() + ".new");
+    }
+
+    /** A new message, numbered after every message created (or loaded) so far. */
+    Message message(String topic, byte[] payload, int entity) {
+        return new Message(topic, payload, entity, lastSeq.incrementAndGet(), System.currentTimeMillis());
+    }
+
+    synchronized void add(Message message) {
+        if (message.isEvent()) {
+            events.put(message.seq, message);
+            if (events.size() > MAX_EVENTS) {
+                events.pollFirstEntry();
+                dropped++;
+            }
+        } else {
+            Message current = states.get(message.topic);
+            if (current != null && current.seq > message.seq) return; // superseded while it was in flight
+
+            if (!states.containsKey(message.topic) && states.size() >= MAX_STATES) {
+                Iterator<String> eldest = states.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                dropped++;
+            }
+            states.put(message.topic, message);
+        }
+        dirty = true;
+    }
+
+    /** Next message to replay, events first, then states; null when empty. */
+    synchronized Message poll(PublishPolicy policy) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            Map.Entry<Long, Message> first = events.pollFirstEntry();
+            Message message = first != null ? first.getValue() : null;
+            if (message == null && !states.isEmpty()) {
+                Iterator<Message> it = states.values().iterator();
+                message = it.next();
+                it.remove();
+            }
+            if (message == null) return null;
+            dirty = true;
+
+            long expiryMs = policy.expirySeconds(message.entity) * 1000L;
+            if (expiryMs > 0 && now - message.queuedAtMs > expiryMs) {
+                expired++;
+                continue;
+            }
+            return message;
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return events.isEmpty() && states.isEmpty();
+    }
+
+    synchronized int size() {
+        return events.size() + states.size();
+    }
+
+    synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("depth", events.size() + states.size());
+        json.put("events", events.size());
+        json.put("states", states.size());
+        json.put("dropped", dropped);
+        json.put("expired", expired);
+        return json;
+    }
+
+    /** Messages pushed out of a full queue. */
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+    /** Messages skipped by {@link #poll} because they were past their expiry. */
+    synchronized long getExpired() {
+        return expired;
+    }
+
+    /** Write the queue to the file if it changed since the last save; an empty queue removes the file. */
+    synchronized void save() {
+        if (!dirty) return;
+        dirty = false;
+        if (isEmpty()) {
+            file.delete();
+            return;
+        }
+
+        try (FileOutputStream stream = new FileOutputStream(newFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(FILE_VERSION);
+            out.writeInt(events.size() + states.size());
+            for (Message message : events.values()) write(out, message);
+            for (Message message : states.values()) write(out, message);
+            out.flush();
+            stream.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save outbound queue", e);
+            newFile.delete();
+            return;
+        }
+        if (!newFile.renameTo(file)) {
+            Log.e(TAG, "Failed to replace " + file);
+            newFile.delete();
+        }
+    }
+
+    /** Add the messages saved by {@link #save()}, e.g. before a restart. */
+    synchronized void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Message message = read(in);
+                lastSeq.accumulateAndGet(message.seq, Math::max);
+                add(message);
+            }
+            Log.i(TAG, "Restored " + count + " queued messages");
+        } catch (FileNotFoundException ignored) {
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to restore outbound queue", e);
+        }
+    }
+
+    synchronized void deleteFile() {
+        file.delete();
+        newFile.delete();
+    }
+
+    private static void write(DataOutputStream out, Message message) throws IOException {
+        out.writeByte(message.entity);
+        out.writeUTF(message.topic);
+        out.writeLong(message.seq);
+        out.writeLong(message.queuedAtMs);
+        out.writeInt(message.payload.length);
+        out.write(message.payload);
+    }
+
+    private static Message read(DataInputStream in) throws IOException {
+        int entity = in.readByte();
+        String topic = in.readUTF();
+        long seq = in.readLong();
+        long queuedAtMs = in.readLong();
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new Message(topic, payload, entity, seq, queuedAtMs);
+    }
+}
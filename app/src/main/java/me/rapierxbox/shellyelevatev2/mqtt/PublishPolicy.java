@@ -0,0 +1,108 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import java.util.Locale;
+
+/**
+ * QoS, retain flag and MQTT 5 message expiry per entity class, applied to every publish and written into the
+ * discovery config, so HA subscribes with the same QoS.
+ * <p>
+ * Spec: {@code class=<qos>[r][/<expiry s>],...}, e.g. {@code telemetry=1,state=1r,event=1/30}
+ * - {@code r} retains the message, expiry 0 (default) means none; an entry sets all three values of its class
+ * - Classes not in the spec keep their default ({@link #DEFAULT_SPEC}): telemetry is fire-and-forget and expires,
+ *   states are retained so HA has them after a restart without a republish, events are acknowledged but go stale
+ */
+final class PublishPolicy {
+
+    static final int TELEMETRY = 0;     // temperature, humidity, lux, proximity, brightness, wake latency
+    static final int STATE = 1;         // relays, inputs, sleeping
+    static final int EVENT = 2;         // button presses, swipes
+    static final int AVAILABILITY = 3;  // status (online / LWT offline)
+    static final int DISCOVERY = 4;     // Home Assistant device config
+    static final int INFO = 5;          // hello
+
+    private static final String[] NAMES = {"telemetry", "state", "event", "availability", "discovery", "info"};
+    static final String DEFAULT_SPEC = "telemetry=0/300,state=1r,event=1/60,availability=1r,discovery=1r,info=0";
+    private static final PublishPolicy DEFAULT = compile(DEFAULT_SPEC, null);
+
+    private final String spec;
+    private final int[] qos = new int[NAMES.length];
+    private final boolean[] retain = new boolean[NAMES.length];
+    private final long[] expirySeconds = new long[NAMES.length];
+
+    private PublishPolicy(String spec) {
+        this.spec = spec;
+    }
+
+    static PublishPolicy defaultPolicy() {
+        return DEFAULT;
+    }
+
+    /** @throws IllegalArgumentException if the spec can't be parsed */
+    static PublishPolicy compile(String spec) {
+        return compile(spec, DEFAULT);
+    }
+
+    private static PublishPolicy compile(String spec, PublishPolicy base) {
+        PublishPolicy policy = new PublishPolicy(spec);
+        if (base != null) {
+            System.arraycopy(base.qos, 0, policy.qos, 0, NAMES.length);
+            System.arraycopy(base.retain, 0, policy.retain, 0, NAMES.length);
+            System.arraycopy(base.expirySeconds, 0, policy.expirySeconds, 0, NAMES.length);
+        }
+
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int eq = entry.indexOf('=');
+            if (eq < 0) throw new IllegalArgumentException("Missing '=' in " + entry);
+            int cls = indexOf(entry.substring(0, eq).trim().toLowerCase(Locale.ROOT));
+            String value = entry.substring(eq + 1).trim().toLowerCase(Locale.ROOT);
+
+            long expiry = 0;
+            int slash = value.indexOf('/');
+            if (slash >= 0) {
+                try {
+                    expiry = Long.parseLong(value.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid expiry in " + entry);
+                }
+                if (expiry < 0 || expiry > 0xFFFFFFFFL) throw new IllegalArgumentException("Invalid expiry in " + entry);
+                value = value.substring(0, slash).trim();
+            }
+            boolean retained = value.endsWith("r");
+            if (retained) value = value.substring(0, value.length() - 1);
+            if (value.length() != 1 || value.charAt(0) < '0' || value.charAt(0) > '2') {
+                throw new IllegalArgumentException("Invalid QoS in " + entry);
+            }
+
+            policy.qos[cls] = value.charAt(0) - '0';
+            policy.retain[cls] = retained;
+            policy.expirySeconds[cls] = expiry;
+        }
+        return policy;
+    }
+
+    private static int indexOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) return i;
+        }
+        throw new IllegalArgumentException("Unknown entity class: " + name);
+    }
+
+    String getSpec() {
+        return spec;
+    }
+
+    int qos(int cls) {
+        return qos[cls];
+    }
+
+    boolean retain(int cls) {
+        return retain[cls];
+    }
+
+    /** Seconds, 0 = never expires. */
+    long expirySeconds(int cls) {
+        return expirySeconds[cls];
+    }
+}
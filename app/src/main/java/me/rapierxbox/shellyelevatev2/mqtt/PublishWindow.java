@@ -0,0 +1,159 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import android.util.Log;
+
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.common.MqttException;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pipelined publishing on the asynchronous client.
+ * - Up to {@link #WINDOW} messages are in flight (handed to the client, QoS 1 ack pending) at once
+ * - Beyond that messages wait in FIFO order and are sent from the completion callback as acks come in
+ * - Nothing waits for a broker round trip, so a button press is not stuck behind a burst of status publishes
+ *   whose PUBACKs arrive one by one
+ * - QoS, retain and expiry come from the {@link PublishPolicy} of the message's entity class
+ * - Messages that could not be sent or were not acknowledged go to the {@link Undelivered} callback, with the
+ *   sequence number they were published with, so the outbound queue can put them back in order
+ */
+final class PublishWindow implements MqttActionListener {
+
+    // well below the receive maximum of common brokers (mosquitto: 20)
+    static final int WINDOW = 16;
+
+    interface Undelivered {
+        void onUndelivered(OutboundQueue.Message message);
+    }
+
+    private static final class Pending {
+        final OutboundQueue.Message message;
+        MqttAsyncClient client;
+
+        Pending(OutboundQueue.Message message) {
+            this.message = message;
+        }
+    }
+
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final Undelivered undelivered;
+    private volatile PublishPolicy policy = PublishPolicy.defaultPolicy();
+
+    // guarded by queue
+    private MqttAsyncClient client;
+    private int inFlight;
+
+    PublishWindow(Undelivered undelivered) {
+        this.undelivered = undelivered;
+    }
+
+    /** Publish through {@code client} from now on; messages waiting for the previous client are undelivered. */
+    void attach(MqttAsyncClient client) {
+        ArrayDeque<Pending> waiting;
+        synchronized (queue) {
+            this.client = client;
+            inFlight = 0;
+            waiting = new ArrayDeque<>(queue);
+            queue.clear();
+        }
+        for (Pending pending : waiting) undelivered.onUndelivered(pending.message);
+    }
+
+    void setPolicy(PublishPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Thread-safe and non-blocking. The payload may be a shared {@link MqttPayloads} array.
+     */
+    void publish(OutboundQueue.Message message) {
+        Pending pending = new Pending(message);
+        synchronized (queue) {
+            if (inFlight >= WINDOW) {
+                queue.add(pending);
+                return;
+            }
+            inFlight++;
+            pending.client = client;
+        }
+        if (!send(pending)) release(pending.client);
+    }
+
+    int getInFlight() {
+        synchronized (queue) {
+            return inFlight;
+        }
+    }
+
+    int getQueued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    @Override
+    public void onSuccess(IMqttToken asyncActionToken) {
+        release(((Pending) asyncActionToken.getUserContext()).client);
+    }
+
+    @Override
+    public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+        Pending pending = (Pending) asyncActionToken.getUserContext();
+        Log.e("MQTT", "Failed to publish to " + pending.message.topic, exception);
+        undelivered.onUndelivered(pending.message);
+        release(pending.client);
+    }
+
+    /** @return false if the message was not handed to the client (it is undelivered), its window slot is still taken */
+    private boolean send(Pending pending) {
+        MqttAsyncClient c = pending.client;
+        OutboundQueue.Message m = pending.message;
+        try {
+            if (c != null && c.isConnected()) {
+                c.publish(m.topic, message(m.payload, m.entity, policy), pending, this);
+                return true;
+            }
+            Log.w("MQTT", "publish deferred — client not connected: " + m.topic);
+        } catch (MqttException e) {
+            Log.e("MQTT", "Failed to publish to " + m.topic, e);
+        }
+        undelivered.onUndelivered(m);
+        return false;
+    }
+
+    /** One message per publish: the client keeps it until the QoS 1 ack, the payload array is shared. */
+    static MqttMessage message(byte[] payload, int entity, PublishPolicy policy) {
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(policy.qos(entity));
+        message.setRetained(policy.retain(entity));
+        long expirySeconds = policy.expirySeconds(entity);
+        if (expirySeconds > 0) {
+            MqttProperties properties = new MqttProperties();
+            properties.setMessageExpiryInterval(expirySeconds);
+            message.setProperties(properties);
+        }
+        return message;
+    }
+
+    /** Frees the slot of a completed message of {@code owner}, or hands it straight to the next queued one. */
+    private void release(MqttAsyncClient owner) {
+        while (true) {
+            Pending next;
+            synchronized (queue) {
+                // completions of a replaced client no longer own a slot
+                if (owner != client) return;
+                next = queue.poll();
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+                next.client = client;
+            }
+            if (send(next)) return;
+        }
+    }
+}
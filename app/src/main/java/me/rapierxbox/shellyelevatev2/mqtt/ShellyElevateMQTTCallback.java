@@ -3,15 +3,13 @@ package me.rapierxbox.shellyelevatev2.mqtt;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mApplicationContext;
 import static me.rapierxbox.shellyelevatev2.Constants.*;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceHelper;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mMQTTServer;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenSaverManager;
 
-import android.content.Intent;
 import android.util.Log;
 import android.widget.Toast;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-
 import org.eclipse.paho.mqttv5.client.IMqttToken;
 import org.eclipse.paho.mqttv5.client.MqttCallback;
 import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
@@ -21,6 +19,10 @@ import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication;
 
@@ -36,60 +38,57 @@ public class ShellyElevateMQTTCallback implements MqttCallback {
         Log.e("MQTT", "Error occurred: " + exception);
     }
 
+    /**
+     * Inbound dispatch: command topic -> handler, built once per client ID by {@link #bind}. Delivery is a single
+     * hash lookup, no {@code replace(clientId, "%s")} per message.
+     */
+    private volatile Map<String, Consumer<MqttMessage>> handlers = Collections.emptyMap();
+
+    /**
+     * Rebuilds the dispatch table for {@code topics} and returns the topics to subscribe to: the command topics of
+     * this device (one {@code relay_command[_n]} per relay) and the shared update and Home Assistant status topics.
+     */
+    String[] bind(MqttTopics topics, int relayCount) {
+        Map<String, Consumer<MqttMessage>> table = new HashMap<>();
+        table.put(MQTT_TOPIC_UPDATE_GENERIC, message -> mMQTTServer.requestStatus(false));
+        table.put(MQTT_TOPIC_HOME_ASSISTANT_STATUS, message -> {
+            // Republish discovery config when Home Assistant comes online
+            if ("online".equals(new String(message.getPayload(), StandardCharsets.UTF_8))) {
+                Log.i("MQTT", "Home Assistant online, republishing discovery");
+                mMQTTServer.requestStatus(true);
+            }
+        });
+        table.put(topics.get(MqttTopics.UPDATE), message -> mMQTTServer.requestStatus(false));
+        table.put(topics.get(MqttTopics.REFRESH_WEBVIEW_BUTTON), message -> mEventBus.postSettingsChanged());
+        table.put(topics.get(MqttTopics.SLEEP_BUTTON), message -> mScreenSaverManager.startScreenSaver());
+        table.put(topics.get(MqttTopics.WAKE_BUTTON), message -> mScreenSaverManager.stopScreenSaver());
+        table.put(topics.get(MqttTopics.REBOOT_BUTTON), message -> reboot());
+        for (int num = 0; num < relayCount; num++) {
+            final int relay = num;
+            table.put(topics.relayCommand(num), message ->
+                    mDeviceHelper.setRelay(relay, new String(message.getPayload(), StandardCharsets.UTF_8).contains("ON")));
+        }
+        handlers = table;
+        return table.keySet().toArray(new String[0]);
+    }
+
     @Override
     public void messageArrived(String topic, MqttMessage message) {
-        if (MQTT_TOPIC_UPDATE_GENERIC.equals(topic)) {
-            mMQTTServer.publishStatus();
-            return;
-        }
-        switch (topic.replace(mMQTTServer.getClientId(), "%s")) {
-            case MQTT_TOPIC_UPDATE:
-	            mMQTTServer.publishStatus();
-	            break;
-            case MQTT_TOPIC_HOME_ASSISTANT_STATUS:
-                // Republish discovery config when Home Assistant comes online
-                String payload = new String(message.getPayload(), StandardCharsets.UTF_8);
-                if ("online".equals(payload)) {
-                    Log.i("MQTT", "Home Assistant online, republishing discovery");
-                    mMQTTServer.publishStatus();
-                }
-                break;
-                // IMPRV: new logic to handle infinite relays
-            case MQTT_TOPIC_RELAY_COMMAND:
-                mDeviceHelper.setRelay(0, new String(message.getPayload(), StandardCharsets.UTF_8).contains("ON"));
-                break;
-            case MQTT_TOPIC_RELAY_COMMAND + "_1":
-                mDeviceHelper.setRelay(1, new String(message.getPayload(), StandardCharsets.UTF_8).contains("ON"));
-                break;
-            case MQTT_TOPIC_REFRESH_WEBVIEW_BUTTON:
-                Intent intent = new Intent(INTENT_SETTINGS_CHANGED);
-                LocalBroadcastManager.getInstance(ShellyElevateApplication.mApplicationContext).sendBroadcast(intent);
-                break;
-            case MQTT_TOPIC_SLEEP_BUTTON:
-                mScreenSaverManager.startScreenSaver();
-                break;
-            case MQTT_TOPIC_WAKE_BUTTON:
-                mScreenSaverManager.stopScreenSaver();
-                break;
-            case MQTT_TOPIC_REBOOT_BUTTON:
-                long deltaTime = System.currentTimeMillis() - ShellyElevateApplication.getApplicationStartTime();
-                deltaTime /= 1000;
-                if (deltaTime > 20) {
-                    try {
-                        Runtime.getRuntime().exec("reboot");
-                    } catch (IOException e) {
-                        Log.e("MQTT", "Error rebooting:", e);
-                    }
-                } else {
-                    Toast.makeText(mApplicationContext, "Please wait %s seconds before rebooting".replace("%s",String.valueOf(20-deltaTime) ), Toast.LENGTH_LONG).show();
-                }
-                break;
-            case MQTT_TOPIC_POWER_BUTTON:
-                // Power button commands from Home Assistant
-                // Payload is JSON with press_type field. No default action on incoming power button;
-                // power button behavior is configured on the device (auto-reboot on long press).
-                Log.i("MQTT", "Power button event received from HA: " + new String(message.getPayload(), StandardCharsets.UTF_8));
-                break;
+        Consumer<MqttMessage> handler = handlers.get(topic);
+        if (handler != null) handler.accept(message);
+    }
+
+    private void reboot() {
+        long deltaTime = System.currentTimeMillis() - ShellyElevateApplication.getApplicationStartTime();
+        deltaTime /= 1000;
+        if (deltaTime > 20) {
+            try {
+                Runtime.getRuntime().exec("reboot");
+            } catch (IOException e) {
+                Log.e("MQTT", "Error rebooting:", e);
+            }
+        } else {
+            Toast.makeText(mApplicationContext, "Please wait %s seconds before rebooting".replace("%s",String.valueOf(20-deltaTime) ), Toast.LENGTH_LONG).show();
         }
     }
 
@@ -0,0 +1,46 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import android.os.SystemClock;
+
+/**
+ * Rate limit for externally triggered work: bursts of up to {@code capacity}, refilled at one token per
+ * {@code refillMs}.
+ */
+final class TokenBucket {
+
+    private final int capacity;
+    private final long refillMs;
+
+    // guarded by this
+    private int tokens;
+    private long lastRefillMs;
+
+    TokenBucket(int capacity, long refillMs) {
+        this.capacity = capacity;
+        this.refillMs = refillMs;
+        this.tokens = capacity;
+        this.lastRefillMs = SystemClock.elapsedRealtime();
+    }
+
+    synchronized boolean tryAcquire() {
+        refill(SystemClock.elapsedRealtime());
+        if (tokens == 0) return false;
+        tokens--;
+        return true;
+    }
+
+    /** Milliseconds until {@link #tryAcquire()} can succeed, 0 if a token is available now. */
+    synchronized long msUntilToken() {
+        long now = SystemClock.elapsedRealtime();
+        refill(now);
+        return tokens > 0 ? 0L : Math.max(0L, lastRefillMs + refillMs - now);
+    }
+
+    private void refill(long now) {
+        long refills = (now - lastRefillMs) / refillMs;
+        if (refills > 0) {
+            tokens = (int) Math.min(capacity, tokens + refills);
+            lastRefillMs = tokens == capacity ? now : lastRefillMs + refills * refillMs;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package me.rapierxbox.shellyelevatev2.screensavers
+
+import android.annotation.SuppressLint
+import android.util.Log
+import android.view.View
+import androidx.core.view.isVisible
+import me.rapierxbox.shellyelevatev2.BuildConfig
+import me.rapierxbox.shellyelevatev2.Constants.SP_SCREEN_SAVER_PIXEL_SHIFT
+import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mScreenSaverManager
+import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mSharedPreferences
+import me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mSwipeHelper
+import me.rapierxbox.shellyelevatev2.databinding.DigitalClockAndDateScreenSaverBinding
+import me.rapierxbox.shellyelevatev2.events.EventBus
+import java.text.SimpleDateFormat
+import java.util.Date
+
+/**
+ * Clock screensavers drawn as layers on top of the WebView in MainActivity.
+ * - Inflated once with the activity: showing and hiding is a visibility flip, no activity transition
+ * - While visible the text is refreshed on the next minute boundary, no TIME_TICK receiver
+ * - The low power clock is a [GlyphClockView] instead of the TextView layout
+ */
+class ClockOverlay(
+    private val binding: DigitalClockAndDateScreenSaverBinding,
+    private val glyphClock: GlyphClockView
+) : EventBus.ClockOverlayListener {
+    private val timeFormatter = SimpleDateFormat.getTimeInstance(SimpleDateFormat.SHORT)
+    private val dateFormatter = SimpleDateFormat.getDateInstance(SimpleDateFormat.MEDIUM)
+
+    private var showDate = false
+    private val tickRunnable = Runnable {
+        updateTime()
+        scheduleTick()
+    }
+
+    init {
+        setupTouch()
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    private fun setupTouch() {
+        val listener = View.OnTouchListener { _, event ->
+            if (BuildConfig.DEBUG) Log.d("ClockOverlay", "Received touch event: $event")
+            mSwipeHelper?.onTouchEvent(event)
+            mScreenSaverManager.onTouchEvent(event)
+            true // nothing reaches the WebView while the clock is shown
+        }
+        binding.clockTouchOverlay.setOnTouchListener(listener)
+        glyphClock.setOnTouchListener(listener)
+    }
+
+    override fun onClockOverlay(mode: Int) {
+        when (mode) {
+            EventBus.ClockOverlayListener.TIME -> show(false)
+            EventBus.ClockOverlayListener.TIME_AND_DATE -> show(true)
+            EventBus.ClockOverlayListener.GLYPH_TIME -> showGlyphClock()
+            else -> hide()
+        }
+    }
+
+    fun show(showDate: Boolean) {
+        glyphClock.stop()
+        this.showDate = showDate
+        binding.dateText.isVisible = showDate
+        updateTime()
+        binding.root.visibility = View.VISIBLE
+        scheduleTick()
+    }
+
+    private fun showGlyphClock() {
+        binding.root.removeCallbacks(tickRunnable)
+        binding.root.visibility = View.GONE
+        glyphClock.start(mSharedPreferences.getBoolean(SP_SCREEN_SAVER_PIXEL_SHIFT, true))
+    }
+
+    fun hide() {
+        binding.root.removeCallbacks(tickRunnable)
+        binding.root.visibility = View.GONE
+        glyphClock.stop()
+    }
+
+    private fun updateTime() {
+        val now = Date()
+        binding.clockText.text = timeFormatter.format(now)
+
+        if (showDate)
+            binding.dateText.text = dateFormatter.format(now)
+    }
+
+    private fun scheduleTick() {
+        binding.root.removeCallbacks(tickRunnable)
+        binding.root.postDelayed(tickRunnable, 60_000L - System.currentTimeMillis() % 60_000L)
+    }
+}
@@ -1,21 +1,21 @@
 package me.rapierxbox.shellyelevatev2.screensavers;
 
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
+
 import android.content.Context;
-import android.content.Intent;
 
-import me.rapierxbox.shellyelevatev2.screensavers.activities.DigitalClockAndDateScreenSaverActivity;
+import me.rapierxbox.shellyelevatev2.events.EventBus.ClockOverlayListener;
 
 public class DigitalClockScreenSaver extends ScreenSaver {
 
     public void onStart(Context context) {
-        Intent intent = new Intent(context, DigitalClockAndDateScreenSaverActivity.class);
-        intent.putExtra("date", false);
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        context.startActivity(intent);
+        // drawn by the ClockOverlay layer in MainActivity
+        mEventBus.postClockOverlay(ClockOverlayListener.TIME);
     }
 
     @Override
     public void onEnd(Context context) {
+        mEventBus.postClockOverlay(ClockOverlayListener.HIDDEN);
     }
 
     @Override
@@ -0,0 +1,31 @@
+package me.rapierxbox.shellyelevatev2.screensavers;
+
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
+
+import android.content.Context;
+
+import me.rapierxbox.shellyelevatev2.events.EventBus.ClockOverlayListener;
+
+public class GlyphClockScreenSaver extends ScreenSaver {
+
+    @Override
+    public void onStart(Context context) {
+        // drawn by GlyphClockView in MainActivity
+        mEventBus.postClockOverlay(ClockOverlayListener.GLYPH_TIME);
+    }
+
+    @Override
+    public void onEnd(Context context) {
+        mEventBus.postClockOverlay(ClockOverlayListener.HIDDEN);
+    }
+
+    @Override
+    public boolean keepsBacklightOn() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "Low Power Clock";
+    }
+}
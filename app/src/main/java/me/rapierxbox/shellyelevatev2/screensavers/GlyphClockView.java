@@ -0,0 +1,227 @@
+package me.rapierxbox.shellyelevatev2.screensavers;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.text.format.DateFormat;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import java.util.Calendar;
+
+import me.rapierxbox.shellyelevatev2.BuildConfig;
+
+/**
+ * Low-power clock: HH:MM drawn from pre-rasterised glyph bitmaps straight onto a surface.
+ * - Glyphs are rendered once per surface size into ALPHA_8 bitmaps, a frame is at most five bitmap blits
+ * - Drawing runs on its own low-priority thread with a software canvas: no view invalidation, no RenderThread/GPU work
+ * - Once a minute only the cells whose digit changed are locked and redrawn, the rest of the buffer is kept
+ * - Optional burn-in protection moves the whole block along a small orbit every {@link #SHIFT_INTERVAL_MINUTES}
+ */
+public class GlyphClockView extends SurfaceView implements SurfaceHolder.Callback {
+
+    private static final String TAG = "GlyphClockView";
+
+    private static final int COLON = 10;
+    private static final int BLANK = -1;
+    private static final int CELLS = 5;
+    private static final float WIDTH_FRACTION = 0.8f;
+    private static final int SHIFT_INTERVAL_MINUTES = 5;
+    private static final int SHIFT_RADIUS_DP = 8;
+    // orbit of unit offsets, visited in order; every pixel ends up lit for only part of the time
+    private static final int[][] SHIFT_ORBIT = {{0, 0}, {1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+    private final Object surfaceLock = new Object();
+    private final Paint glyphPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final int[] shownCells = new int[CELLS];
+    private final Rect dirty = new Rect();
+    private final Runnable tickRunnable = this::tick;
+
+    private HandlerThread drawThread;
+    private volatile Handler drawHandler;
+
+    // guarded by surfaceLock
+    private boolean surfaceReady;
+    private Bitmap[] glyphs;
+    private int surfaceWidth;
+    private int surfaceHeight;
+    private int cellWidth;
+    private int colonWidth;
+    private int glyphHeight;
+    private int shiftStep = -1;
+    private int originX;
+    private int originY;
+
+    private volatile boolean pixelShift = true;
+
+    public GlyphClockView(Context context) {
+        this(context, null);
+    }
+
+    public GlyphClockView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        getHolder().addCallback(this);
+        glyphPaint.setColor(Color.WHITE);
+    }
+
+    /** Show the clock; the first frame is drawn as soon as the surface exists. */
+    public void start(boolean pixelShift) {
+        this.pixelShift = pixelShift;
+        if (drawThread == null) {
+            drawThread = new HandlerThread("GlyphClock", Process.THREAD_PRIORITY_BACKGROUND);
+            drawThread.start();
+            drawHandler = new Handler(drawThread.getLooper());
+        }
+        setVisibility(VISIBLE);
+        drawHandler.removeCallbacks(tickRunnable);
+        drawHandler.post(tickRunnable);
+    }
+
+    /** Hide the clock and stop the draw thread; the surface (and its buffers) goes away with the view. */
+    public void stop() {
+        setVisibility(GONE);
+        if (drawThread != null) {
+            drawHandler.removeCallbacksAndMessages(null);
+            drawThread.quit();
+            drawThread = null;
+            drawHandler = null;
+        }
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        synchronized (surfaceLock) {
+            surfaceReady = true;
+            if (width != surfaceWidth || height != surfaceHeight || glyphs == null) {
+                rasterise(width, height);
+            }
+            shiftStep = -1; // new buffers: next frame is a full one
+        }
+        Handler handler = drawHandler;
+        if (handler != null) {
+            handler.removeCallbacks(tickRunnable);
+            handler.post(tickRunnable);
+        }
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // blocks until a frame in progress is posted, no frame starts afterwards
+        synchronized (surfaceLock) {
+            surfaceReady = false;
+        }
+    }
+
+    private void rasterise(int width, int height) {
+        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTypeface(Typeface.create("sans-serif-black", Typeface.NORMAL));
+        textPaint.setTextSize(100f);
+
+        // size the text so "88:88" (tabular digits) fills WIDTH_FRACTION of the width and at most half the height,
+        // leaving room for the shift
+        float digitWidth = 0f;
+        for (char c = '0'; c <= '9'; c++) digitWidth = Math.max(digitWidth, textPaint.measureText(String.valueOf(c)));
+        float total = 4 * digitWidth + textPaint.measureText(":");
+        Paint.FontMetrics reference = textPaint.getFontMetrics();
+        float scale = Math.min(width * WIDTH_FRACTION / total, height * 0.5f / (reference.descent - reference.ascent));
+        textPaint.setTextSize(100f * scale);
+
+        digitWidth = 0f;
+        for (char c = '0'; c <= '9'; c++) digitWidth = Math.max(digitWidth, textPaint.measureText(String.valueOf(c)));
+        Paint.FontMetrics metrics = textPaint.getFontMetrics();
+        cellWidth = (int) Math.ceil(digitWidth);
+        colonWidth = (int) Math.ceil(textPaint.measureText(":"));
+        glyphHeight = (int) Math.ceil(metrics.descent - metrics.ascent);
+
+        glyphs = new Bitmap[11];
+        for (int i = 0; i <= COLON; i++) {
+            String s = i == COLON ? ":" : String.valueOf(i);
+            int w = i == COLON ? colonWidth : cellWidth;
+            Bitmap bitmap = Bitmap.createBitmap(w, glyphHeight, Bitmap.Config.ALPHA_8);
+            new Canvas(bitmap).drawText(s, (w - textPaint.measureText(s)) / 2f, -metrics.ascent, textPaint);
+            glyphs[i] = bitmap;
+        }
+
+        surfaceWidth = width;
+        surfaceHeight = height;
+        if (BuildConfig.DEBUG) Log.d(TAG, "Glyphs rasterised for " + width + "x" + height + ", cell " + cellWidth + "x" + glyphHeight);
+    }
+
+    private void tick() {
+        Calendar now = Calendar.getInstance();
+        draw(now);
+
+        Handler handler = drawHandler;
+        if (handler != null) {
+            long millis = now.getTimeInMillis();
+            handler.postDelayed(tickRunnable, 60_000L - millis % 60_000L);
+        }
+    }
+
+    private void draw(Calendar now) {
+        int hour = now.get(Calendar.HOUR_OF_DAY);
+        int minute = now.get(Calendar.MINUTE);
+        boolean twelveHour = !DateFormat.is24HourFormat(getContext());
+        if (twelveHour) hour = hour % 12 == 0 ? 12 : hour % 12;
+        int[] cells = {twelveHour && hour < 10 ? BLANK : hour / 10, hour % 10, COLON, minute / 10, minute % 10};
+
+        synchronized (surfaceLock) {
+            if (!surfaceReady || glyphs == null) return;
+
+            int step = pixelShift ? (int) ((now.getTimeInMillis() / 60_000L / SHIFT_INTERVAL_MINUTES) % SHIFT_ORBIT.length) : 0;
+            boolean full = step != shiftStep;
+            if (full) {
+                float radius = SHIFT_RADIUS_DP * getResources().getDisplayMetrics().density;
+                shiftStep = step;
+                originX = (surfaceWidth - (4 * cellWidth + colonWidth)) / 2 + Math.round(SHIFT_ORBIT[step][0] * radius);
+                originY = (surfaceHeight - glyphHeight) / 2 + Math.round(SHIFT_ORBIT[step][1] * radius);
+            }
+
+            dirty.setEmpty();
+            if (full) {
+                dirty.set(0, 0, surfaceWidth, surfaceHeight);
+            } else {
+                for (int i = 0; i < CELLS; i++) {
+                    if (cells[i] != shownCells[i]) dirty.union(cellLeft(i), originY, cellLeft(i) + cellWidth(i), originY + glyphHeight);
+                }
+                if (dirty.isEmpty()) return;
+            }
+
+            SurfaceHolder holder = getHolder();
+            Canvas canvas = holder.lockCanvas(dirty);
+            if (canvas == null) return;
+            try {
+                // the surface may hand back a larger dirty area (e.g. a fresh buffer): paint everything inside it
+                canvas.drawColor(Color.BLACK);
+                for (int i = 0; i < CELLS; i++) {
+                    if (cells[i] != BLANK) canvas.drawBitmap(glyphs[cells[i]], cellLeft(i), originY, glyphPaint);
+                    shownCells[i] = cells[i];
+                }
+            } finally {
+                holder.unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    private int cellLeft(int i) {
+        return originX + (i > 2 ? (i - 1) * cellWidth + colonWidth : i * cellWidth);
+    }
+
+    private int cellWidth(int i) {
+        return i == 2 ? colonWidth : cellWidth;
+    }
+}
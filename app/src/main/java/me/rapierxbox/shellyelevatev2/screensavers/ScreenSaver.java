@@ -6,4 +6,9 @@ public abstract class ScreenSaver {
     public abstract void onStart(Context context);
     public abstract void onEnd(Context context);
     public abstract String getName();
+
+    /** Whether the screen stays lit at the screensaver min brightness instead of going to 0. */
+    public boolean keepsBacklightOn() {
+        return false;
+    }
 }
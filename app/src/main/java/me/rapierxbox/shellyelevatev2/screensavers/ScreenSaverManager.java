@@ -1,46 +1,75 @@
 package me.rapierxbox.shellyelevatev2.screensavers;
 
+import static android.view.MotionEvent.ACTION_CANCEL;
+import static android.view.MotionEvent.ACTION_DOWN;
 import static android.view.MotionEvent.ACTION_UP;
 import static me.rapierxbox.shellyelevatev2.Constants.*;
 import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mDeviceSensorManager;
+import static me.rapierxbox.shellyelevatev2.ShellyElevateApplication.mEventBus;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.MotionEvent;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
-
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import me.rapierxbox.shellyelevatev2.BuildConfig;
 import me.rapierxbox.shellyelevatev2.ShellyElevateApplication;
+import me.rapierxbox.shellyelevatev2.events.EventBus;
+import me.rapierxbox.shellyelevatev2.helper.ScreenManager;
 
 /**
  * Handles automatic screensaver start/stop logic and proximity-based wake.
+ * The idle timer is a single deadline: touches only record their time, the timer pushes itself forward when it fires
+ * early, and it isn't armed at all while the saver runs, keep-alive is set or the saver is disabled.
  */
-public class ScreenSaverManager extends BroadcastReceiver {
+public class ScreenSaverManager implements EventBus.ProximityListener {
 
     private static final String TAG = "ScreenSaverManager";
 
     private final Context appContext;
     private final ScheduledExecutorService scheduler;
     private final ScreenSaver[] screenSavers;
-
-    private long lastTouchEventTime;
-    private boolean screenSaverRunning;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable proximityWakeRunnable = () -> {
+        Log.i(TAG, "Proximity detected, exiting screensaver");
+        stopScreenSaver();
+    };
+
+    private final SharedPreferences prefs;
+    private final Runnable idleRunnable = this::onIdleDeadline;
+    private ScheduledFuture<?> idleTask; // guarded by this
+
+    // SystemClock.elapsedRealtime() of the last touch/proximity/user interaction
+    private volatile long lastTouchEventTime;
+    private volatile boolean screenSaverRunning;
 	private volatile boolean keepAliveFlag = false;
     private long lastProximityEventTime = 0L;
 
+    // prefs cached
+    private volatile boolean cachedEnabled;
+    private volatile long cachedDelayMs;
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener = (sharedPreferences, key) -> {
+        if (SP_SCREEN_SAVER_ENABLED.equals(key) || SP_SCREEN_SAVER_DELAY.equals(key)) {
+            loadPrefsToCache(sharedPreferences);
+            armIdleTimer();
+        }
+    };
+
     public static ScreenSaver[] getAvailableScreenSavers() {
         return new ScreenSaver[]{
                 new ScreenOffScreenSaver(),
                 new DigitalClockScreenSaver(),
-                new DigitalClockAndDateScreenSaver()
+                new DigitalClockAndDateScreenSaver(),
+                new GlyphClockScreenSaver()
         };
     }
 
@@ -48,35 +77,40 @@ public class ScreenSaverManager extends BroadcastReceiver {
         this.appContext = ctx.getApplicationContext();
         this.scheduler = Executors.newSingleThreadScheduledExecutor();
         this.screenSavers = getAvailableScreenSavers();
-        this.lastTouchEventTime = System.currentTimeMillis();
+        this.lastTouchEventTime = SystemClock.elapsedRealtime();
         this.screenSaverRunning = false;
+        this.prefs = ShellyElevateApplication.mSharedPreferences;
 
-        // Periodic idle check
-        scheduler.scheduleWithFixedDelay(this::checkLastTouchEventTime, 0, 1, TimeUnit.SECONDS);
+        loadPrefsToCache(prefs);
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        armIdleTimer();
 
-        // Register proximity receiver
-        LocalBroadcastManager.getInstance(appContext)
-                .registerReceiver(this, new IntentFilter(INTENT_PROXIMITY_UPDATED));
+        // Filtering runs on the sensor thread, only the wake itself is posted to the main thread
+        mEventBus.proximity.register(this, EventBus.Delivery.INLINE);
 
         Log.i(TAG, "ScreenSaverManager initialized");
     }
 
     public void onDestroy() {
-        try {
-            LocalBroadcastManager.getInstance(appContext).unregisterReceiver(this);
-        } catch (Exception e) {
-            Log.w(TAG, "Receiver already unregistered", e);
-        }
+        mEventBus.proximity.unregister(this);
+        mainHandler.removeCallbacks(proximityWakeRunnable);
+        prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
 
         if (!scheduler.isShutdown()) scheduler.shutdownNow();
         Log.i(TAG, "ScreenSaverManager destroyed");
     }
 
     public boolean onTouchEvent(MotionEvent event) {
-        lastTouchEventTime = System.currentTimeMillis();
+        // no rescheduling per touch: the armed deadline re-checks this when it fires
+        lastTouchEventTime = SystemClock.elapsedRealtime();
         if (event == null) return true;
 
-        if (event.getAction() == ACTION_UP && isScreenSaverRunning()) {
+        int action = event.getActionMasked();
+        if (action == ACTION_DOWN) {
+            // light the panel on touch-down, the saver itself ends on the release
+            ScreenManager screenManager = ShellyElevateApplication.mScreenManager;
+            if (screenManager != null) screenManager.fastWake(event.getEventTime(), ScreenManager.WAKE_SOURCE_TOUCH);
+        } else if ((action == ACTION_UP || action == ACTION_CANCEL) && isScreenSaverRunning()) {
             stopScreenSaver();
         }
         return true;
@@ -99,22 +133,37 @@ public class ScreenSaverManager extends BroadcastReceiver {
     }
 
     public boolean isScreenSaverEnabled() {
-        return ShellyElevateApplication.mSharedPreferences != null &&
-                ShellyElevateApplication.mSharedPreferences.getBoolean(SP_SCREEN_SAVER_ENABLED, true);
+        return cachedEnabled;
     }
 
-	private void checkLastTouchEventTime() {
-		var prefs = ShellyElevateApplication.mSharedPreferences;
-		if (prefs == null) return;
+    private void loadPrefsToCache(SharedPreferences sharedPreferences) {
+        cachedEnabled = sharedPreferences.getBoolean(SP_SCREEN_SAVER_ENABLED, true);
+        cachedDelayMs = sharedPreferences.getInt(SP_SCREEN_SAVER_DELAY, 45) * 1000L;
+    }
 
-		long delay = prefs.getInt(SP_SCREEN_SAVER_DELAY, 45) * 1000L;
-		boolean enabled = prefs.getBoolean(SP_SCREEN_SAVER_ENABLED, true);
+    /** (Re)arm the idle deadline, or disarm it while no transition to the saver is possible. */
+    private synchronized void armIdleTimer() {
+        if (idleTask != null) {
+            idleTask.cancel(false);
+            idleTask = null;
+        }
+        if (keepAliveFlag || !cachedEnabled || screenSaverRunning || scheduler.isShutdown()) return;
+
+        long remaining = lastTouchEventTime + cachedDelayMs - SystemClock.elapsedRealtime();
+        idleTask = scheduler.schedule(idleRunnable, Math.max(0L, remaining), TimeUnit.MILLISECONDS);
+    }
 
-		// NEW: skip idle check if keepAlive is active
-		if (keepAliveFlag || !enabled || screenSaverRunning) return;
+	private void onIdleDeadline() {
+		synchronized (this) {
+			idleTask = null;
+		}
+		if (keepAliveFlag || !cachedEnabled || screenSaverRunning) return;
 
-		if (System.currentTimeMillis() - lastTouchEventTime > delay) {
+		if (SystemClock.elapsedRealtime() - lastTouchEventTime >= cachedDelayMs) {
 			startScreenSaver();
+		} else {
+			// touched since the deadline was armed: push it forward
+			armIdleTimer();
 		}
 	}
 
@@ -122,6 +171,7 @@ public class ScreenSaverManager extends BroadcastReceiver {
 		this.keepAliveFlag = keepAlive;
 		if (keepAlive) {
 			Log.i(TAG, "KeepAlive enabled: screensaver will not start");
+			armIdleTimer(); // disarms
 			// If saver is already running, stop it immediately
 			if (screenSaverRunning) {
 				stopScreenSaver();
@@ -129,7 +179,8 @@ public class ScreenSaverManager extends BroadcastReceiver {
 		} else {
 			Log.i(TAG, "KeepAlive disabled: screensaver logic resumes");
 			// Reset idle timer so saver doesn't start instantly
-			lastTouchEventTime = System.currentTimeMillis();
+			lastTouchEventTime = SystemClock.elapsedRealtime();
+			armIdleTimer();
 		}
 	}
 
@@ -137,6 +188,7 @@ public class ScreenSaverManager extends BroadcastReceiver {
         if (screenSaverRunning || !isScreenSaverEnabled()) return;
 
         screenSaverRunning = true;
+        armIdleTimer(); // disarms until the saver ends
         ScreenSaver saver = getCurrentScreenSaver();
         saver.onStart(appContext);
         Log.i(TAG, "Starting screensaver: " + saver.getClass().getSimpleName());
@@ -144,9 +196,7 @@ public class ScreenSaverManager extends BroadcastReceiver {
         var mqtt = ShellyElevateApplication.mMQTTServer;
         if (mqtt != null && mqtt.shouldSend()) mqtt.publishSleeping(true);
 
-        // Defer non-critical broadcast to reduce main-thread pressure
-        scheduler.execute(() -> LocalBroadcastManager.getInstance(appContext)
-                .sendBroadcast(new Intent(INTENT_SCREEN_SAVER_STARTED)));
+        mEventBus.postScreenSaver(true);
     }
 
     public void stopScreenSaver() {
@@ -156,14 +206,10 @@ public class ScreenSaverManager extends BroadcastReceiver {
         ScreenSaver saver = getCurrentScreenSaver();
         saver.onEnd(appContext);
 
-        // Defer non-critical broadcasts to reduce main-thread pressure
-        scheduler.execute(() -> {
-            appContext.sendBroadcast(new Intent(INTENT_END_SCREENSAVER));
-            LocalBroadcastManager.getInstance(appContext)
-                    .sendBroadcast(new Intent(INTENT_SCREEN_SAVER_STOPPED));
-        });
+        mEventBus.postScreenSaver(false);
 
-        lastTouchEventTime = System.currentTimeMillis();
+        lastTouchEventTime = SystemClock.elapsedRealtime();
+        armIdleTimer();
 
         Log.i(TAG, "Stopping screensaver: " + saver.getClass().getSimpleName());
 
@@ -171,33 +217,35 @@ public class ScreenSaverManager extends BroadcastReceiver {
         if (mqtt != null && mqtt.shouldSend()) mqtt.publishSleeping(false);
     }
 
+    /** Runs on the sensor thread. */
     @Override
-    public void onReceive(Context context, Intent intent) {
+    public void onProximity(float proximity) {
+        long receivedAt = SystemClock.uptimeMillis();
         float maxProximitySensorValue = mDeviceSensorManager.getMaxProximitySensorValue();
-        float proximity = intent.getFloatExtra(INTENT_PROXIMITY_KEY, maxProximitySensorValue);
         if (BuildConfig.DEBUG) Log.i(TAG, "Proximity event: " + proximity + " - Value: " + proximity);
 
-        long now = System.currentTimeMillis();
+        long now = SystemClock.elapsedRealtime();
         if (now - lastProximityEventTime < 350L) {
             return; // debounce rapid proximity updates
         }
         lastProximityEventTime = now;
 
-        var mqtt = ShellyElevateApplication.mMQTTServer;
-        if (mqtt != null && mqtt.shouldSend()) mqtt.publishProximity(proximity);
-
-        var prefs = ShellyElevateApplication.mSharedPreferences;
-        if (prefs == null) return;
-
         boolean wakeOnProximity = prefs.getBoolean(SP_WAKE_ON_PROXIMITY, true);
         float threshold = 0.5f; // 0.5 cm buffer
         boolean isNear = proximity < maxProximitySensorValue - threshold;
         if (screenSaverRunning && isNear) {
             // Wake even if the pref is off to avoid being stuck at brightness 0
-            stopScreenSaver();
+            ScreenManager screenManager = ShellyElevateApplication.mScreenManager;
+            if (screenManager != null) screenManager.fastWake(receivedAt, ScreenManager.WAKE_SOURCE_PROXIMITY);
+            mainHandler.removeCallbacks(proximityWakeRunnable);
+            mainHandler.post(proximityWakeRunnable);
         } else if (wakeOnProximity && isNear) {
             // Not in saver yet, but a near event should refresh the idle timer
             lastTouchEventTime = now;
         }
+
+        // after the wake, so reporting never delays the backlight
+        var mqtt = ShellyElevateApplication.mMQTTServer;
+        if (mqtt != null && mqtt.shouldSend()) mqtt.publishProximity(proximity);
     }
 }
@@ -0,0 +1,92 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class SensorScriptTest {
+
+    @Test
+    public void parsesAllKinds() throws IOException {
+        SensorScript script = SensorScript.parse(
+                "# delayMs  kind       arguments\n" +
+                "200        light      120.5\n" +
+                "\n" +
+                "0          proximity  0      # someone in front\n" +
+                "0          key        131 down\n" +
+                "120        KEY        131 up\n" +
+                "0          relay      1 1\n" +
+                "0          climate    31457 26214\n");
+
+        List<SensorScript.Step> steps = script.getSteps();
+        assertEquals(6, steps.size());
+
+        assertEquals(200, steps.get(0).delayMs);
+        assertEquals(SensorScript.Kind.LIGHT, steps.get(0).kind);
+        assertEquals(120.5f, steps.get(0).value, 0f);
+
+        assertEquals(SensorScript.Kind.PROXIMITY, steps.get(1).kind);
+        assertEquals(0f, steps.get(1).value, 0f);
+
+        assertEquals(SensorScript.Kind.KEY, steps.get(2).kind);
+        assertEquals(131, steps.get(2).arg0);
+        assertEquals(1, steps.get(2).arg1);
+        assertEquals(120, steps.get(3).delayMs);
+        assertEquals(0, steps.get(3).arg1);
+
+        assertEquals(SensorScript.Kind.RELAY, steps.get(4).kind);
+        assertEquals(1, steps.get(4).arg0);
+        assertEquals(1, steps.get(4).arg1);
+
+        assertEquals(SensorScript.Kind.CLIMATE, steps.get(5).kind);
+        assertEquals(31457, steps.get(5).arg0);
+        assertEquals(26214, steps.get(5).arg1);
+    }
+
+    @Test
+    public void rejectsInvalidLines() {
+        assertInvalid("200 light\n", "line 1");
+        assertInvalid("0 light 5\n200 sound 3\n", "line 2");
+        assertInvalid("soon light 5\n", "line 1");
+        assertInvalid("0 relay 0\n", "line 1");
+    }
+
+    @Test
+    public void rejectsEmptyScript() {
+        assertInvalid("# nothing\n\n", "Empty");
+    }
+
+    @Test
+    public void defaultScriptLoopsInTwoMinutes() {
+        List<SensorScript.Step> steps = SensorScript.defaultScript().getSteps();
+
+        long totalMs = 0;
+        boolean hasKey = false;
+        boolean hasRelay = false;
+        for (SensorScript.Step step : steps) {
+            totalMs += step.delayMs;
+            if (step.kind == SensorScript.Kind.LIGHT) assertTrue(step.value >= 0f);
+            hasKey |= step.kind == SensorScript.Kind.KEY;
+            hasRelay |= step.kind == SensorScript.Kind.RELAY;
+        }
+        assertEquals(120_000 + 120, totalMs); // 600 light samples at 200 ms plus the key release
+        assertTrue(hasKey);
+        assertTrue(hasRelay);
+        assertFalse(steps.isEmpty());
+    }
+
+    private static void assertInvalid(String script, String messagePart) {
+        try {
+            SensorScript.parse(script);
+            fail("Parsed invalid script: " + script);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(messagePart));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SimulatedHardwareBackendTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void seedsAndDeletesTree() throws IOException {
+        SimulatedHardwareBackend backend = SimulatedHardwareBackend.create(temp.getRoot(), SensorScript.defaultScript());
+        backend.setIoLatency(0, 0, 0);
+        File root = new File(backend.getRoot());
+
+        assertFalse(backend.readRelay(0));
+        assertFalse(backend.readRelay(1));
+        assertEquals(128, backend.readBacklight());
+        int[] raw = new int[2];
+        assertTrue(backend.readClimate(raw));
+        assertArrayEquals(new int[]{29491, 25768}, raw);
+
+        backend.close();
+        assertFalse(root.exists());
+    }
+
+    @Test
+    public void addsHardwareLatency() throws IOException {
+        SimulatedHardwareBackend backend = SimulatedHardwareBackend.create(temp.getRoot(), SensorScript.defaultScript());
+        try {
+            long start = System.nanoTime();
+            assertTrue(backend.readClimate(new int[2]));
+            long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            assertTrue(elapsedMicros + "us", elapsedMicros >= SimulatedHardwareBackend.DEFAULT_CLIMATE_READ_MICROS);
+        } finally {
+            backend.close();
+        }
+    }
+
+    @Test
+    public void replaysScript() throws Exception {
+        SensorScript script = SensorScript.parse(
+                "0 relay 1 1\n" +
+                "10 light 42\n" +
+                "1000 light 1\n");
+        SimulatedHardwareBackend backend = SimulatedHardwareBackend.create(temp.getRoot(), script);
+        CountDownLatch light = new CountDownLatch(1);
+        float[] lux = new float[1];
+        try {
+            backend.startSensors(new HardwareBackend.SensorListener() {
+                @Override
+                public void onLight(float value, long timestampNanos) {
+                    lux[0] = value;
+                    light.countDown();
+                }
+
+                @Override
+                public void onProximity(float distance) {
+                }
+
+                @Override
+                public void onKey(int keyCode, boolean down) {
+                }
+            });
+            assertTrue(light.await(2, TimeUnit.SECONDS));
+            assertEquals(42f, lux[0], 0f);
+            // the relay step ran before the light step, behind the backend's back
+            assertTrue(backend.readRelay(1));
+        } finally {
+            backend.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package me.rapierxbox.shellyelevatev2.hardware;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+public class SysfsHardwareBackendTest {
+
+    private static final String RELAY1 = "/sys/class/strelay/relay1";
+    private static final String RELAY2 = "/sys/devices/platform/leds/red_enable";
+    private static final String BACKLIGHT = SysfsHardwareBackend.BACKLIGHT_FILES[1];
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File root;
+    private SysfsHardwareBackend backend;
+
+    @Before
+    public void setUp() throws IOException {
+        root = temp.newFolder("sysfs");
+        write(RELAY1, "0\n");
+        write(RELAY2, "1\n");
+        write(BACKLIGHT, "128\n");
+        write(SysfsHardwareBackend.CLIMATE_FILE, "29491:25768\n");
+        backend = new SysfsHardwareBackend(root.getAbsolutePath(), true);
+    }
+
+    @After
+    public void tearDown() {
+        backend.close();
+    }
+
+    @Test
+    public void readsRelays() {
+        assertEquals(2, backend.getRelayCount());
+        assertFalse(backend.readRelay(0));
+        assertTrue(backend.readRelay(1));
+        assertFalse(backend.readRelay(2));
+    }
+
+    @Test
+    public void writesOnlyExistingRelayFiles() throws IOException {
+        assertTrue(backend.writeRelay(0, true));
+        assertEquals("1", read(RELAY1));
+        assertTrue(backend.readRelay(0));
+        // the other candidate path of relay 0 doesn't exist on this "model" and must not be created
+        assertFalse(new File(root, "/sys/devices/platform/leds/green_enable").exists());
+
+        assertTrue(backend.writeRelay(0, false));
+        assertEquals("0", read(RELAY1));
+        assertFalse(backend.writeRelay(-1, true));
+    }
+
+    @Test
+    public void listsExistingRelayFiles() {
+        assertEquals(Collections.singletonList(root.getAbsolutePath() + RELAY1), backend.getRelayFiles(0));
+        assertEquals(Collections.singletonList(root.getAbsolutePath() + RELAY2), backend.getRelayFiles(1));
+        assertTrue(backend.getRelayFiles(5).isEmpty());
+    }
+
+    @Test
+    public void writesBacklightWithoutStaleDigits() throws IOException {
+        assertTrue(backend.hasBacklight());
+        assertEquals(128, backend.readBacklight());
+
+        assertTrue(backend.writeBacklight(255));
+        assertTrue(backend.writeBacklight(7));
+        assertEquals("7", read(BACKLIGHT));
+        assertEquals(7, backend.readBacklight());
+
+        assertTrue(backend.writeBacklight(1000)); // clamped
+        assertEquals(255, backend.readBacklight());
+    }
+
+    @Test
+    public void readsRawClimate() throws IOException {
+        int[] raw = new int[2];
+        assertTrue(backend.readClimate(raw));
+        assertArrayEquals(new int[]{29491, 25768}, raw);
+
+        // the attribute is kept open and re-read from offset 0
+        write(SysfsHardwareBackend.CLIMATE_FILE, "31457:26214\n");
+        assertTrue(backend.readClimate(raw));
+        assertArrayEquals(new int[]{31457, 26214}, raw);
+    }
+
+    @Test
+    public void reportsMissingAttributes() throws IOException {
+        SysfsHardwareBackend empty = new SysfsHardwareBackend(temp.newFolder("empty").getAbsolutePath(), true);
+        try {
+            assertFalse(empty.hasBacklight());
+            assertFalse(empty.writeBacklight(10));
+            assertNotNull(empty.getLastError());
+            assertFalse(empty.readClimate(new int[2]));
+            assertFalse(empty.readRelay(0));
+        } finally {
+            empty.close();
+        }
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(root, path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String read(String path) throws IOException {
+        return new String(Files.readAllBytes(new File(root, path).toPath()), StandardCharsets.US_ASCII);
+    }
+}
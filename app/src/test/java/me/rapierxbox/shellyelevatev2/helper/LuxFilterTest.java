@@ -0,0 +1,53 @@
+package me.rapierxbox.shellyelevatev2.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LuxFilterTest {
+
+    @Test
+    public void emaUsesSampleSpacing() {
+        // 30 s of readings at 2 s spacing, e.g. a batch flushed from the sensor FIFO in one go
+        LuxFilter bySampleTime = LuxFilter.create(LuxFilter.EMA, 3000, 5, 0, 0);
+        LuxFilter byArrival = LuxFilter.create(LuxFilter.EMA, 3000, 5, 0, 0);
+        float sampled = 0f;
+        float arrived = 0f;
+        for (int i = 0; i <= 15; i++) {
+            float lux = i == 0 ? 10f : 500f;
+            sampled = bySampleTime.apply(lux, i * 2000L);
+            arrived = byArrival.apply(lux, 60_000L); // all delivered at the same moment
+        }
+        assertEquals(500f, sampled, 1f);
+        assertEquals(10f, arrived, 0f);
+    }
+
+    @Test
+    public void attackIsFasterThanDecay() {
+        LuxFilter rising = LuxFilter.create(LuxFilter.ATTACK_DECAY, 0, 5, 1000, 10000);
+        LuxFilter falling = LuxFilter.create(LuxFilter.ATTACK_DECAY, 0, 5, 1000, 10000);
+        rising.apply(100f, 0L);
+        falling.apply(100f, 0L);
+
+        float up = rising.apply(200f, 1000L) - 100f;
+        float down = 100f - falling.apply(0f, 1000L);
+        assertTrue(up + " vs " + down, up > 2 * down);
+    }
+
+    @Test
+    public void medianDropsSpike() {
+        LuxFilter median = LuxFilter.create(LuxFilter.MEDIAN, 0, 3, 0, 0);
+        median.apply(100f, 0L);
+        median.apply(100f, 200L);
+        assertEquals(100f, median.apply(5000f, 400L), 0f);
+        assertEquals(100f, median.apply(100f, 600L), 0f);
+    }
+
+    @Test
+    public void unknownTypeIsPassThrough() {
+        LuxFilter filter = LuxFilter.create("bogus", 3000, 5, 1500, 6000);
+        assertEquals(42f, filter.apply(42f, 0L), 0f);
+        assertEquals(7f, filter.apply(7f, 1L), 0f);
+    }
+}
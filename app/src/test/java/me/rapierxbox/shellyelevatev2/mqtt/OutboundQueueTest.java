@@ -0,0 +1,167 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class OutboundQueueTest {
+
+    private static final PublishPolicy POLICY = PublishPolicy.defaultPolicy();
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File file;
+    private OutboundQueue queue;
+
+    @Before
+    public void setUp() {
+        file = new File(temp.getRoot(), "outbound.bin");
+        queue = new OutboundQueue(file);
+    }
+
+    @Test
+    public void replaysEventsBeforeStates() {
+        queue.add(queue.message("relay/0", bytes(1), PublishPolicy.STATE));
+        queue.add(queue.message("button/0", bytes(2), PublishPolicy.EVENT));
+
+        assertEquals("button/0", queue.poll(POLICY).topic);
+        assertEquals("relay/0", queue.poll(POLICY).topic);
+        assertNull(queue.poll(POLICY));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void keepsEventsInPublishOrder() {
+        OutboundQueue.Message first = queue.message("button/0", bytes(1), PublishPolicy.EVENT);
+        OutboundQueue.Message second = queue.message("swipe", bytes(2), PublishPolicy.EVENT);
+        OutboundQueue.Message third = queue.message("button/0", bytes(3), PublishPolicy.EVENT);
+
+        // the newest was queued while offline, the older ones come back late from the publish window
+        queue.add(third);
+        queue.add(second);
+        queue.add(first);
+
+        assertEquals(1, queue.poll(POLICY).payload[0]);
+        assertEquals(2, queue.poll(POLICY).payload[0]);
+        assertEquals(3, queue.poll(POLICY).payload[0]);
+    }
+
+    @Test
+    public void keepsLastValuePerStateTopic() {
+        queue.add(queue.message("relay/0", bytes(1), PublishPolicy.STATE));
+        queue.add(queue.message("relay/1", bytes(1), PublishPolicy.STATE));
+        queue.add(queue.message("relay/0", bytes(0), PublishPolicy.STATE));
+        assertEquals(2, queue.size());
+
+        // in the order the topics first changed, with their last value
+        OutboundQueue.Message relay0 = queue.poll(POLICY);
+        assertEquals("relay/0", relay0.topic);
+        assertEquals(0, relay0.payload[0]);
+        assertEquals("relay/1", queue.poll(POLICY).topic);
+    }
+
+    @Test
+    public void lateStateDoesNotReplaceNewerValue() {
+        OutboundQueue.Message old = queue.message("relay/0", bytes(1), PublishPolicy.STATE);
+        OutboundQueue.Message current = queue.message("relay/0", bytes(0), PublishPolicy.STATE);
+        queue.add(current);
+        queue.add(old);
+
+        assertEquals(0, queue.poll(POLICY).payload[0]);
+        assertNull(queue.poll(POLICY));
+    }
+
+    @Test
+    public void dropsOldestEventsBeyondLimit() {
+        for (int i = 0; i < OutboundQueue.MAX_EVENTS + 3; i++) {
+            queue.add(queue.message("button/0", bytes(i), PublishPolicy.EVENT));
+        }
+        assertEquals(OutboundQueue.MAX_EVENTS, queue.size());
+        assertEquals(3, queue.getDropped());
+        assertEquals(3, queue.poll(POLICY).payload[0]);
+    }
+
+    @Test
+    public void evictsEldestStateTopicBeyondLimit() {
+        for (int i = 0; i < OutboundQueue.MAX_STATES + 1; i++) {
+            queue.add(queue.message("sensor/" + i, bytes(i), PublishPolicy.TELEMETRY));
+        }
+        assertEquals(OutboundQueue.MAX_STATES, queue.size());
+        assertEquals(1, queue.getDropped());
+        assertEquals("sensor/1", queue.poll(POLICY).topic);
+
+        // updating a queued topic never evicts
+        queue.add(queue.message("sensor/2", bytes(0), PublishPolicy.TELEMETRY));
+        assertEquals(1, queue.getDropped());
+    }
+
+    @Test
+    public void skipsExpiredMessages() {
+        long now = System.currentTimeMillis();
+        long eventExpiryMs = POLICY.expirySeconds(PublishPolicy.EVENT) * 1000L;
+        queue.add(new OutboundQueue.Message("button/0", bytes(1), PublishPolicy.EVENT, 1, now - eventExpiryMs - 1000));
+        queue.add(new OutboundQueue.Message("button/0", bytes(2), PublishPolicy.EVENT, 2, now));
+        // states never expire by default
+        queue.add(new OutboundQueue.Message("relay/0", bytes(3), PublishPolicy.STATE, 3, now - 86_400_000L));
+
+        assertEquals(2, queue.poll(POLICY).payload[0]);
+        assertEquals(3, queue.poll(POLICY).payload[0]);
+        assertNull(queue.poll(POLICY));
+        assertEquals(1, queue.getExpired());
+    }
+
+    @Test
+    public void roundTripsThroughFile() {
+        queue.add(queue.message("relay/0", bytes(1), PublishPolicy.STATE));
+        queue.add(queue.message("button/0", new byte[]{'p', 'r', 'e', 's', 's'}, PublishPolicy.EVENT));
+        queue.add(queue.message("button/1", new byte[0], PublishPolicy.EVENT));
+        queue.save();
+        assertTrue(file.exists());
+
+        OutboundQueue restored = new OutboundQueue(file);
+        restored.load();
+        assertEquals(3, restored.size());
+
+        OutboundQueue.Message press = restored.poll(POLICY);
+        assertEquals("button/0", press.topic);
+        assertEquals(PublishPolicy.EVENT, press.entity);
+        assertArrayEquals(new byte[]{'p', 'r', 'e', 's', 's'}, press.payload);
+        assertEquals(0, restored.poll(POLICY).payload.length);
+        OutboundQueue.Message relay = restored.poll(POLICY);
+        assertEquals(PublishPolicy.STATE, relay.entity);
+
+        // numbering continues after the restored messages
+        assertTrue(restored.message("x", bytes(0), PublishPolicy.EVENT).seq > relay.seq);
+    }
+
+    @Test
+    public void savingEmptyQueueRemovesFile() {
+        queue.add(queue.message("relay/0", bytes(1), PublishPolicy.STATE));
+        queue.save();
+        assertTrue(file.exists());
+
+        queue.poll(POLICY);
+        queue.save();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void loadWithoutFileIsEmpty() {
+        queue.load();
+        assertTrue(queue.isEmpty());
+    }
+
+    private static byte[] bytes(int value) {
+        return new byte[]{(byte) value};
+    }
+}
@@ -0,0 +1,83 @@
+package me.rapierxbox.shellyelevatev2.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class PublishPolicyTest {
+
+    @Test
+    public void defaults() {
+        PublishPolicy policy = PublishPolicy.defaultPolicy();
+        assertEquals(PublishPolicy.DEFAULT_SPEC, policy.getSpec());
+
+        assertEquals(0, policy.qos(PublishPolicy.TELEMETRY));
+        assertFalse(policy.retain(PublishPolicy.TELEMETRY));
+        assertEquals(300, policy.expirySeconds(PublishPolicy.TELEMETRY));
+
+        assertEquals(1, policy.qos(PublishPolicy.STATE));
+        assertTrue(policy.retain(PublishPolicy.STATE));
+        assertEquals(0, policy.expirySeconds(PublishPolicy.STATE));
+
+        assertEquals(1, policy.qos(PublishPolicy.EVENT));
+        assertFalse(policy.retain(PublishPolicy.EVENT));
+        assertEquals(60, policy.expirySeconds(PublishPolicy.EVENT));
+
+        assertTrue(policy.retain(PublishPolicy.AVAILABILITY));
+        assertTrue(policy.retain(PublishPolicy.DISCOVERY));
+        assertEquals(0, policy.qos(PublishPolicy.INFO));
+    }
+
+    @Test
+    public void overridesOnlyListedClasses() {
+        PublishPolicy policy = PublishPolicy.compile(" Telemetry = 1r/30 , event=2 ,");
+
+        assertEquals(1, policy.qos(PublishPolicy.TELEMETRY));
+        assertTrue(policy.retain(PublishPolicy.TELEMETRY));
+        assertEquals(30, policy.expirySeconds(PublishPolicy.TELEMETRY));
+
+        // an entry sets all three values: no "/" means no expiry
+        assertEquals(2, policy.qos(PublishPolicy.EVENT));
+        assertFalse(policy.retain(PublishPolicy.EVENT));
+        assertEquals(0, policy.expirySeconds(PublishPolicy.EVENT));
+
+        PublishPolicy defaults = PublishPolicy.defaultPolicy();
+        assertEquals(defaults.qos(PublishPolicy.STATE), policy.qos(PublishPolicy.STATE));
+        assertEquals(defaults.retain(PublishPolicy.STATE), policy.retain(PublishPolicy.STATE));
+        assertEquals(" Telemetry = 1r/30 , event=2 ,", policy.getSpec());
+    }
+
+    @Test
+    public void emptySpecIsDefault() {
+        PublishPolicy policy = PublishPolicy.compile("");
+        for (int cls = PublishPolicy.TELEMETRY; cls <= PublishPolicy.INFO; cls++) {
+            assertEquals(PublishPolicy.defaultPolicy().qos(cls), policy.qos(cls));
+            assertEquals(PublishPolicy.defaultPolicy().retain(cls), policy.retain(cls));
+            assertEquals(PublishPolicy.defaultPolicy().expirySeconds(cls), policy.expirySeconds(cls));
+        }
+    }
+
+    @Test
+    public void rejectsInvalidSpecs() {
+        assertInvalid("telemetry");           // missing '='
+        assertInvalid("weather=1");           // unknown class
+        assertInvalid("state=3");             // QoS out of range
+        assertInvalid("state=");              // no QoS
+        assertInvalid("state=r");             // retain without QoS
+        assertInvalid("state=1x");            // unknown flag
+        assertInvalid("event=1/soon");        // expiry not a number
+        assertInvalid("event=1/-5");          // negative expiry
+        assertInvalid("event=1/4294967296");  // beyond the MQTT 5 four byte interval
+    }
+
+    private static void assertInvalid(String spec) {
+        try {
+            PublishPolicy.compile(spec);
+            fail("Compiled invalid spec: " + spec);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}